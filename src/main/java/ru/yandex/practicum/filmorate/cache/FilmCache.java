@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.CacheStats;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Read-through кэш полностью загруженных фильмов по id с вытеснением W-TinyLFU.
+ * Отсутствующие фильмы не кэшируются. Запись инвалидируется при любом изменении фильма,
+ * его лайков или режиссеров; инвалидация, пришедшая во время загрузки записи,
+ * дожидается ее окончания и удаляет загруженное значение.
+ */
+@Component
+public class FilmCache {
+    private final FilmStorage filmStorage;
+    private final long maximumSize;
+    private final Cache<Integer, Film> cache;
+
+    public FilmCache(FilmStorage filmStorage,
+                     @Value("${filmorate.film-cache.maximum-size:10000}") long maximumSize) {
+        this.filmStorage = filmStorage;
+        this.maximumSize = maximumSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Film> findFilmById(int id) {
+        return Optional.ofNullable(cache.get(id, key -> filmStorage.findFilmById(key, FilmField.ALL).orElse(null)));
+    }
+
+    public void invalidate(int id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll(Collection<Integer> ids) {
+        cache.invalidateAll(ids);
+    }
+
+    public CacheStats stats() {
+        com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.stats();
+        return CacheStats.builder()
+                .size(cache.estimatedSize())
+                .maximumSize(maximumSize)
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .evictions(stats.evictionCount())
+                .hitRate(stats.hitRate())
+                .build();
+    }
+}
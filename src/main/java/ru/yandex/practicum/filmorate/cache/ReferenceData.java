@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Справочники жанров, рейтингов MPA и режиссеров в памяти.
+ * Снимок неизменяемый и подменяется целиком (copy-on-write), поэтому читается без блокировок.
+ * Жанры и рейтинги загружаются один раз при старте, режиссеры обновляются сервисом режиссеров.
+ * Если при догрузке фильма записи нет в снимке, из базы по первичному ключу читается только она
+ * и добавляется в снимок копированием раздела.
+ */
+@Slf4j
+@Component
+public class ReferenceData {
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final DirectorStorage directorStorage;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), Map.of());
+
+    public ReferenceData(GenreStorage genreStorage, MpaStorage mpaStorage, DirectorStorage directorStorage) {
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.directorStorage = directorStorage;
+    }
+
+    @PostConstruct
+    public synchronized void reload() {
+        snapshot = new Snapshot(
+                byId(genreStorage.findAllGenres(), Genre::getId),
+                byId(mpaStorage.findAllMpa(), Mpa::getId),
+                byId(directorStorage.findAllDirectors(), Director::getId));
+        log.info("Справочники загружены: жанров {}, рейтингов {}, режиссеров {}",
+                snapshot.genres().size(), snapshot.mpa().size(), snapshot.directors().size());
+    }
+
+    public List<Genre> findAllGenres() {
+        return List.copyOf(snapshot.genres().values());
+    }
+
+    public Optional<Genre> findGenreById(int id) {
+        return Optional.ofNullable(snapshot.genres().get(id));
+    }
+
+    public List<Mpa> findAllMpa() {
+        return List.copyOf(snapshot.mpa().values());
+    }
+
+    public Optional<Mpa> findMpaById(int id) {
+        return Optional.ofNullable(snapshot.mpa().get(id));
+    }
+
+    public List<Director> findAllDirectors() {
+        return List.copyOf(snapshot.directors().values());
+    }
+
+    public Optional<Director> findDirectorById(int id) {
+        return Optional.ofNullable(snapshot.directors().get(id));
+    }
+
+    /**
+     * Жанр для догрузки фильма. Жанр, которого нет в снимке, читается из базы и добавляется в снимок.
+     */
+    public Genre genre(int id) {
+        return resolve(id, Snapshot::genres, genreStorage::findGenreById, Snapshot::withGenre,
+                () -> new Genre(id, null));
+    }
+
+    public Mpa mpa(int id) {
+        return resolve(id, Snapshot::mpa, mpaStorage::findMpaById, Snapshot::withMpa, () -> new Mpa(id, null));
+    }
+
+    public Director director(int id) {
+        return resolve(id, Snapshot::directors, directorStorage::findDirectorById, Snapshot::withDirector,
+                () -> new Director(id, null));
+    }
+
+    public synchronized void putDirector(Director director) {
+        snapshot = snapshot.withDirector(director);
+    }
+
+    public synchronized void removeDirector(int id) {
+        Map<Integer, Director> directors = new TreeMap<>(snapshot.directors());
+        directors.remove(id);
+        snapshot = new Snapshot(snapshot.genres(), snapshot.mpa(), Collections.unmodifiableMap(directors));
+    }
+
+    /**
+     * Запись из снимка, а при ее отсутствии - из базы по id. Чтение из базы идет без блокировки,
+     * блокируется только подмена снимка, поэтому промахи по разным id не ждут друг друга.
+     */
+    private <T> T resolve(int id, Function<Snapshot, Map<Integer, T>> section, IntFunction<Optional<T>> loader,
+                          BiFunction<Snapshot, T, Snapshot> merge, Supplier<T> missing) {
+        T value = section.apply(snapshot).get(id);
+        if (value != null) {
+            return value;
+        }
+        log.warn("Запись справочника id={} не найдена в снимке, читается из базы", id);
+        Optional<T> loaded = loader.apply(id);
+        if (loaded.isEmpty()) {
+            return missing.get();
+        }
+        synchronized (this) {
+            snapshot = merge.apply(snapshot, loaded.get());
+        }
+        return loaded.get();
+    }
+
+    private static <T> Map<Integer, T> byId(List<T> values, Function<T, Integer> id) {
+        Map<Integer, T> map = new TreeMap<>();
+        values.forEach(value -> map.put(id.apply(value), value));
+        return Collections.unmodifiableMap(map);
+    }
+
+    private record Snapshot(Map<Integer, Genre> genres, Map<Integer, Mpa> mpa, Map<Integer, Director> directors) {
+        private Snapshot withGenre(Genre genre) {
+            return new Snapshot(with(genres, genre.getId(), genre), mpa, directors);
+        }
+
+        private Snapshot withMpa(Mpa rating) {
+            return new Snapshot(genres, with(mpa, rating.getId(), rating), directors);
+        }
+
+        private Snapshot withDirector(Director director) {
+            return new Snapshot(genres, mpa,
+                    with(directors, director.getId(), new Director(director.getId(), director.getName())));
+        }
+
+        private static <T> Map<Integer, T> with(Map<Integer, T> section, int id, T value) {
+            Map<Integer, T> copy = new TreeMap<>(section);
+            copy.put(id, value);
+            return Collections.unmodifiableMap(copy);
+        }
+    }
+}
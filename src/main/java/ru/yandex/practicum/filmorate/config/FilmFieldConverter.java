@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FilmField;
+
+@Component
+public class FilmFieldConverter implements Converter<String, FilmField> {
+
+    @Override
+    public FilmField convert(String source) {
+        return FilmField.fromProperty(source.trim());
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.model.Film;
+
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * По умолчанию фильтр фильма пропускает все поля, ограничение задается только для ответов с fields.
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer filmFieldsFilterCustomizer() {
+        return builder -> builder.filters(new SimpleFilterProvider()
+                .addFilter(Film.FIELDS_FILTER, SimpleBeanPropertyFilter.serializeAll()));
+    }
+}
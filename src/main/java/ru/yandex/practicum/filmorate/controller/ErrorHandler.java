@@ -6,9 +6,12 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.servlet.resource.NoResourceFoundException;
 import ru.yandex.practicum.filmorate.exception.*;
 
 import javax.validation.ConstraintViolationException;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @RestControllerAdvice
@@ -16,7 +19,8 @@ public class ErrorHandler {
 
     @ExceptionHandler({
             ValidationException.class,
-            MethodArgumentNotValidException.class
+            MethodArgumentNotValidException.class,
+            MethodArgumentTypeMismatchException.class
     })
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorResponse handleMethodArgumentNotValidException(final Exception e) {
@@ -24,6 +28,16 @@ public class ErrorHandler {
         return new ErrorResponse(e.getMessage());
     }
 
+    /**
+     * Ошибка пакетной загрузки фильмов: кроме сообщения возвращает id уже созданных фильмов и индекс фильма с ошибкой.
+     */
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponse handleBatchValidationException(final BatchValidationException e) {
+        log.info(e.getMessage());
+        return new BatchErrorResponse(e);
+    }
+
     @ExceptionHandler
     public ErrorResponse handleConstraintViolationException(final ConstraintViolationException e) {
         log.info(e.getMessage());
@@ -37,6 +51,23 @@ public class ErrorHandler {
         return new ErrorResponse(e.getMessage());
     }
 
+    /**
+     * Неизвестный маршрут, в том числе отключенный свойством.
+     */
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public ErrorResponse handleNoResourceFoundException(final NoResourceFoundException e) {
+        log.info(e.getMessage());
+        return new ErrorResponse(String.format("Не найден маршрут /%s", e.getResourcePath()));
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleRejectedExecutionException(final RejectedExecutionException e) {
+        log.warn(e.getMessage());
+        return new ErrorResponse(e.getMessage());
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorResponse handleThrowable(final Throwable e) {
@@ -1,14 +1,36 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exception.BatchValidationException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmPage;
+import ru.yandex.practicum.filmorate.model.Suggestion;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Validated
 @Slf4j
@@ -16,7 +38,15 @@ import java.util.List;
 @RestController
 @RequestMapping("films")
 public class FilmController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final MediaType NDJSON = MediaType.parseMediaType(NDJSON_VALUE);
+
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
 
     @PostMapping
     public Film create(@Valid @RequestBody Film film) {
@@ -24,6 +54,25 @@ public class FilmController {
         return filmService.create(film);
     }
 
+    /**
+     * Пакетная загрузка фильмов: JSON-массив или NDJSON, по фильму в строке. Возвращает id созданных фильмов
+     * в порядке пакета. Тело читается потоком, фильмы пишутся частями по мере чтения (см. {@link FilmService#createAll}).
+     * Пакет не атомарен: при ошибке в фильме части до нее остаются записанными, ответ 400 содержит кроме error
+     * id созданных фильмов createdIds и индекс фильма с ошибкой failedIndex. Повторять нужно фильмы начиная
+     * с createdIds.size(), а не весь пакет.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public List<Integer> createAll(InputStream body) throws IOException {
+        log.info("POST / films / batch");
+        try (MappingIterator<Film> films = objectMapper.readerFor(Film.class).readValues(body)) {
+            List<Integer> ids = filmService.createAll(new ValidatedFilms(films));
+            log.info("Создано фильмов из пакета: {}", ids.size());
+            return ids;
+        } catch (JsonProcessingException e) {
+            throw new BatchValidationException(invalidFilm(0, e).getMessage(), List.of(), 0);
+        }
+    }
+
     @PutMapping
     public Film update(@Valid @RequestBody Film film) {
         log.info("PUT / film / {}", film.getName());
@@ -37,15 +86,52 @@ public class FilmController {
     }
 
     @GetMapping
-    public List<Film> findAllFilms() {
-        log.info("GET / films");
-        return filmService.findAllFilms();
+    public ResponseEntity<MappingJacksonValue> findAllFilms(@RequestParam(required = false) Integer limit,
+                                                            @RequestParam(required = false) Integer after,
+                                                            @RequestParam(required = false) Set<FilmField> fields) {
+        log.info("GET / films limit={} after={} fields={}", limit, after, fields);
+        if (limit == null && after == null) {
+            return ResponseEntity.ok(withFields(filmService.findAllFilms(fields), fields));
+        }
+
+        FilmPage page = filmService.findFilmsPage(after, limit == null ? DEFAULT_PAGE_SIZE : limit, fields);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(withFields(page.getFilms(), fields));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        log.info("GET / films / export");
+        StreamingResponseBody body = out -> filmService.exportAllFilms(films -> {
+            try {
+                for (Film film : films) {
+                    out.write(objectMapper.writeValueAsBytes(film));
+                    out.write('\n');
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 
     @GetMapping("/{id}")
-    public Film findFilmById(@PathVariable("id") int id) {
-        log.info("GET / {}", id);
-        return filmService.findFilmById(id);
+    public MappingJacksonValue findFilmById(@PathVariable("id") int id,
+                                            @RequestParam(required = false) Set<FilmField> fields) {
+        log.info("GET / {} fields={}", id, fields);
+        return withFields(filmService.findFilmById(id), fields);
+    }
+
+    @GetMapping("/{id}/similar")
+    public MappingJacksonValue findSimilarFilms(@PathVariable("id") int id,
+                                                @RequestParam(defaultValue = "10") int limit,
+                                                @RequestParam(required = false) Set<FilmField> fields) {
+        log.info("GET / {} / similar limit={} fields={}", id, limit, fields);
+        return withFields(filmService.findSimilarFilms(id, limit, fields), fields);
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -61,27 +147,131 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<Film> findPopular(@RequestParam(defaultValue = "10", required = false) Integer count,
-                                  @RequestParam(required = false) Integer genreId,
-                                  @RequestParam(required = false) Integer year) {
-        log.info("GET / popular count={} genreId={} year={}", count, genreId, year);
-        return filmService.findPopular(count, genreId, year);
+    public MappingJacksonValue findPopular(@RequestParam(defaultValue = "10", required = false) Integer count,
+                                           @RequestParam(required = false) List<Integer> genreId,
+                                           @RequestParam(required = false) Integer year,
+                                           @RequestParam(required = false) Integer fromYear,
+                                           @RequestParam(required = false) Integer toYear,
+                                           @RequestParam(required = false) Set<FilmField> fields) {
+        log.info("GET / popular count={} genreId={} year={} fromYear={} toYear={} fields={}",
+                count, genreId, year, fromYear, toYear, fields);
+        return withFields(filmService.findPopular(count, genreId, year, fromYear, toYear, fields), fields);
+    }
+
+    @GetMapping("/trending")
+    public MappingJacksonValue findTrending(@RequestParam(defaultValue = "10", required = false) Integer count,
+                                            @RequestParam(required = false) List<Integer> genreId,
+                                            @RequestParam(required = false) Integer year,
+                                            @RequestParam(required = false) Integer fromYear,
+                                            @RequestParam(required = false) Integer toYear,
+                                            @RequestParam(required = false) Set<FilmField> fields) {
+        log.info("GET / trending count={} genreId={} year={} fromYear={} toYear={} fields={}",
+                count, genreId, year, fromYear, toYear, fields);
+        return withFields(filmService.findTrending(count, genreId, year, fromYear, toYear, fields), fields);
     }
 
     @GetMapping("/director/{id}")
-    public List<Film> findFilmsByDirectorID(@PathVariable("id") Integer id, @RequestParam("sortBy") String sortedBy) {
-        log.info("GET / director / {} / sortBy {}", id, sortedBy);
-        return filmService.findFilmsByDirectorID(id, sortedBy);
+    public MappingJacksonValue findFilmsByDirectorID(@PathVariable("id") Integer id,
+                                                     @RequestParam("sortBy") String sortedBy,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     @RequestParam(defaultValue = "0") int offset,
+                                                     @RequestParam(required = false) Set<FilmField> fields) {
+        log.info("GET / director / {} / sortBy {} limit={} offset={} fields={}", id, sortedBy, limit, offset, fields);
+        return withFields(filmService.findFilmsByDirectorID(id, sortedBy, limit, offset, fields), fields);
     }
 
     @GetMapping("/common")
-    public List<Film> findCommonFilms(@RequestParam int userId, @RequestParam int friendId) {
-        log.info("GET / common ? userId={} & friendId={} ", userId, friendId);
-        return filmService.findCommonFilms(userId, friendId);
+    public MappingJacksonValue findCommonFilms(@RequestParam int userId, @RequestParam int friendId,
+                                               @RequestParam(required = false) Set<FilmField> fields) {
+        log.info("GET / common ? userId={} & friendId={} fields={}", userId, friendId, fields);
+        return withFields(filmService.findCommonFilms(userId, friendId, fields), fields);
     }
 
     @GetMapping("/search")
-    public List<Film> searchFilm(@RequestParam String query, @RequestParam List<String> by) {
-        return filmService.searchFilm(query, by);
+    public ResponseEntity<MappingJacksonValue> searchFilm(@RequestParam String query, @RequestParam List<String> by,
+                                                          @RequestParam(required = false) Integer limit,
+                                                          @RequestParam(required = false) Integer after,
+                                                          @RequestParam(defaultValue = "false") boolean fuzzy,
+                                                          @RequestParam(required = false) Set<FilmField> fields) {
+        log.info("GET / search query={} by={} limit={} after={} fuzzy={} fields={}", query, by, limit, after, fuzzy, fields);
+        if (fuzzy) {
+            return ResponseEntity.ok(withFields(filmService.searchFilmFuzzy(query, by, after, limit, fields), fields));
+        }
+        FilmPage page = filmService.searchFilm(query, by, after, limit, fields);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(withFields(page.getFilms(), fields));
+    }
+
+    @GetMapping("/search/suggest")
+    public List<Suggestion> findSuggestions(@RequestParam String prefix,
+                                            @RequestParam(defaultValue = "10") int limit) {
+        log.info("GET / search / suggest prefix={} limit={}", prefix, limit);
+        return filmService.findSuggestions(prefix, limit);
+    }
+
+    /**
+     * Ограничивает сериализацию фильмов полями из параметра fields, без него фильм отдается целиком.
+     */
+    private static MappingJacksonValue withFields(Object body, Set<FilmField> fields) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        if (fields != null && !fields.isEmpty()) {
+            Set<String> properties = fields.stream()
+                    .map(FilmField::getProperty)
+                    .collect(Collectors.toSet());
+            value.setFilters(new SimpleFilterProvider()
+                    .addFilter(Film.FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(properties)));
+        }
+        return value;
+    }
+
+    private static ValidationException invalidFilm(int index, JsonProcessingException e) {
+        return new ValidationException(String.format("Некорректный фильм с индексом %d: %s", index, e.getOriginalMessage()));
+    }
+
+    /**
+     * Фильмы пакета по одному из потока Jackson, который читает и корневой массив, и последовательность
+     * объектов без массива. Каждый фильм проверяется аннотациями при чтении, в ошибках указан индекс фильма.
+     */
+    private final class ValidatedFilms implements Iterator<Film> {
+        private final MappingIterator<Film> films;
+        private int index;
+
+        private ValidatedFilms(MappingIterator<Film> films) {
+            this.films = films;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return films.hasNextValue();
+            } catch (JsonProcessingException e) {
+                throw invalidFilm(index, e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Film next() {
+            Film film;
+            try {
+                film = films.nextValue();
+            } catch (JsonProcessingException e) {
+                throw invalidFilm(index, e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Set<ConstraintViolation<Film>> violations = validator.validate(film);
+            if (!violations.isEmpty()) {
+                throw new ValidationException(String.format("Фильм с индексом %d: %s", index,
+                        violations.stream().map(ConstraintViolation::getMessage).sorted()
+                                .collect(Collectors.joining(" "))));
+            }
+            index++;
+            return film;
+        }
     }
 }
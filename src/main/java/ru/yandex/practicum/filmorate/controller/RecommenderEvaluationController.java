@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.RecommenderEvaluation;
+import ru.yandex.practicum.filmorate.recommendation.RecommenderEvaluator;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Офлайн-оценка стратегий рекомендаций. Маршрут есть только при filmorate.recommendations.evaluation.enabled=true.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/stats")
+@ConditionalOnProperty(name = "filmorate.recommendations.evaluation.enabled", havingValue = "true")
+public class RecommenderEvaluationController {
+    private final RecommenderEvaluator recommenderEvaluator;
+
+    /**
+     * Оценка выполняется вне потока запроса, ответ отправляется по ее завершении.
+     */
+    @GetMapping("/recommenders/evaluation")
+    public CompletableFuture<List<RecommenderEvaluation>> evaluateRecommenders(@RequestParam(defaultValue = "10") int k,
+                                                                               @RequestParam(defaultValue = "0.2") double holdout,
+                                                                               @RequestParam(defaultValue = "42") long seed) {
+        log.info("GET / stats / recommenders / evaluation k={} holdout={} seed={}", k, holdout, seed);
+        return recommenderEvaluator.evaluateAsync(k, holdout, seed);
+    }
+}
@@ -54,6 +54,15 @@ public class ReviewController {
         return reviewService.findByFilmId(filmId, count);
     }
 
+    @GetMapping("/search")
+    public List<Review> search(@RequestParam String q,
+                               @RequestParam(required = false) Boolean isPositive,
+                               @RequestParam(required = false) Integer filmId,
+                               @RequestParam(required = false, defaultValue = "10") int count) {
+        log.info("GET / reviews / search q={} isPositive={} filmId={} count={}", q, isPositive, filmId, count);
+        return reviewService.search(q, isPositive, filmId, count);
+    }
+
     @GetMapping("/{id}")
     public Review findById(@PathVariable int id) {
         log.info("GET / {}", id);
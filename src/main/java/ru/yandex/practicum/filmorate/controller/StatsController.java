@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.model.CacheStats;
+import ru.yandex.practicum.filmorate.model.RecommendationStats;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/stats")
+public class StatsController {
+    private final FilmCache filmCache;
+    private final RecommendationService recommendationService;
+
+    @GetMapping("/film-cache")
+    public CacheStats filmCacheStats() {
+        log.info("GET / stats / film-cache");
+        return filmCache.stats();
+    }
+
+    @GetMapping("/recommendations")
+    public RecommendationStats recommendationStats() {
+        log.info("GET / stats / recommendations");
+        return recommendationService.stats();
+    }
+}
@@ -85,8 +85,10 @@ public class UserController {
     }
 
     @GetMapping("/{id}/recommendations")
-    public List<Film> findRecommendedFilms(@PathVariable("id") int id) {
-        log.info("GET / {} / recommendations", id);
-        return filmService.findRecommendedFilms(id);
+    public List<Film> findRecommendedFilms(@PathVariable("id") int id,
+                                           @RequestParam(required = false) String algorithm,
+                                           @RequestParam(required = false) Integer limit) {
+        log.info("GET / {} / recommendations algorithm={} limit={}", id, algorithm, limit);
+        return filmService.findRecommendedFilms(id, algorithm, limit);
     }
 }
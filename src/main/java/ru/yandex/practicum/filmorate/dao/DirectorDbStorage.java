@@ -11,6 +11,7 @@ import ru.yandex.practicum.filmorate.storage.DirectorStorage;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -56,6 +57,16 @@ public class DirectorDbStorage implements DirectorStorage {
         return jdbcTemplate.query(SELECT_DIRECTORS + sql, (rs, rowNum) -> makeDirector(rs), id).stream().findFirst();
     }
 
+    @Override
+    public boolean existsById(int id) {
+        return ExistsQueries.existsById(jdbcTemplate, "directors", "director_id", id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Integer> ids) {
+        return ExistsQueries.existsAll(jdbcTemplate, "directors", "director_id", ids);
+    }
+
     @Override
     public void removeDirectorById(int id) {
         String sql = "DELETE FROM directors WHERE director_id = ?";
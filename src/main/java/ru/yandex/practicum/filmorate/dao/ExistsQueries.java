@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Проверки существования по первичному ключу: читается только индекс, строки и связи не загружаются.
+ */
+final class ExistsQueries {
+    /**
+     * Максимальное количество id в одном IN (...).
+     */
+    private static final int IN_BATCH_SIZE = 500;
+
+    private ExistsQueries() {
+    }
+
+    static boolean existsById(JdbcTemplate jdbcTemplate, String table, String idColumn, int id) {
+        String sql = "SELECT 1 FROM %s WHERE %s = ?".formatted(table, idColumn);
+        return !jdbcTemplate.queryForList(sql, Integer.class, id).isEmpty();
+    }
+
+    /**
+     * Существуют ли все id. Повторы в ids не учитываются, пустой набор существует.
+     */
+    static boolean existsAll(JdbcTemplate jdbcTemplate, String table, String idColumn, Collection<Integer> ids) {
+        List<Integer> distinct = ids.stream().distinct().toList();
+        for (int from = 0; from < distinct.size(); from += IN_BATCH_SIZE) {
+            List<Integer> batch = distinct.subList(from, Math.min(from + IN_BATCH_SIZE, distinct.size()));
+            String sql = "SELECT COUNT(*) FROM %s WHERE %s IN (%s)"
+                    .formatted(table, idColumn, String.join(", ", Collections.nCopies(batch.size(), "?")));
+            Integer found = jdbcTemplate.queryForObject(sql, Integer.class, batch.toArray());
+            if (found == null || found != batch.size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.dao;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
@@ -18,6 +19,7 @@ import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 @Slf4j
 @Repository
@@ -31,6 +33,10 @@ public class FeedDbStorage implements FeedStorage {
             "WHERE USER_ID = ?;";
     public static final String ADD_FEED_ENTRY = "INSERT INTO FEED(EVENT_TIMESTAMP, USER_ID, EVENT_TYPE, OPERATION , ENTITY_ID) " +
             "values(?, ?, ?, ?, ?);";
+    public static final String GET_LIKE_EVENTS = "SELECT EVENT_TIMESTAMP, USER_ID, EVENT_TYPE , OPERATION , EVENT_ID , ENTITY_ID " +
+            "FROM FEED " +
+            "WHERE EVENT_TYPE = 'LIKE' " +
+            "ORDER BY EVENT_ID;";
 
 
     @Override
@@ -55,6 +61,14 @@ public class FeedDbStorage implements FeedStorage {
         return jdbcTemplate.query(GET_USER_FEED, (rs, rowNum) -> makeFeedEntry(rs), userId);
     }
 
+    /**
+     * Обходит события лайков в порядке их записи построчно, без загрузки ленты в список.
+     */
+    @Override
+    public void forEachLikeEvent(Consumer<FeedEntry> consumer) {
+        jdbcTemplate.query(GET_LIKE_EVENTS, (RowCallbackHandler) rs -> consumer.accept(makeFeedEntry(rs)));
+    }
+
     private FeedEntry makeFeedEntry(ResultSet rs) throws SQLException {
         return FeedEntry.builder()
                 .eventId(rs.getInt("EVENT_ID"))
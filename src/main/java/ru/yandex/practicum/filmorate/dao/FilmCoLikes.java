@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Счетчики совместных лайков film_co_likes: для каждой упорядоченной пары фильмов число пользователей,
+ * лайкнувших оба. Учитываются только пользователи не больше чем с maxUserLikes лайками: лайки тех, кто лайкает
+ * почти все подряд, мало говорят о похожести фильмов, а число пар от них растет квадратично.
+ * Методы вызываются в транзакции, которая меняет likes, после изменения likes.
+ */
+@Slf4j
+@Component
+class FilmCoLikes {
+    private static final int ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 20;
+
+    /**
+     * Пары обходятся в порядке ключа, чтобы транзакции, задевающие одни и те же пары, блокировали их в одном порядке
+     * и не ждали друг друга по кругу.
+     */
+    private static final String MERGE_PAIRS = """
+            MERGE INTO film_co_likes AS c
+            USING (SELECT * FROM (%s) AS s ORDER BY s.film_id, s.other_film_id) AS p
+            ON c.film_id = p.film_id AND c.other_film_id = p.other_film_id
+            WHEN MATCHED THEN UPDATE SET co_likes = c.co_likes + 1
+            WHEN NOT MATCHED THEN INSERT (film_id, other_film_id, co_likes) VALUES (p.film_id, p.other_film_id, 1)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxUserLikes;
+
+    FilmCoLikes(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                @Value("${filmorate.similar.max-user-likes:200}") int maxUserLikes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxUserLikes = maxUserLikes;
+    }
+
+    int maxUserLikes() {
+        return maxUserLikes;
+    }
+
+    /**
+     * Выполняет work в отдельной транзакции. Если две транзакции одновременно добавляют одну и ту же новую пару,
+     * H2 сразу отклоняет вторую вставку по первичному ключу, не дожидаясь первой транзакции. Тогда вторая
+     * откатывается целиком и повторяется после паузы, когда пара уже зафиксирована и только увеличивается.
+     * Так же повторяется транзакция, которую H2 откатил при взаимной блокировке или по таймауту ожидания.
+     */
+    <T> T inTransaction(Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (DuplicateKeyException | ConcurrencyFailureException e) {
+                if (attempt == ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Конфликт записи совместных лайков, попытка {}: {}", attempt, e.getMessage());
+                try {
+                    Thread.sleep(attempt * RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Пользователь лайкнул фильм. В пределах лимита пары фильма с остальными его фильмами получают по совместному
+     * лайку в обе стороны, при выходе за лимит все прежние пары пользователя теряют по совместному лайку.
+     */
+    void likeAdded(int filmId, int userId) {
+        int userLikes = countUserLikes(userId);
+        if (userLikes <= maxUserLikes) {
+            jdbcTemplate.update(MERGE_PAIRS.formatted("""
+                    SELECT ? AS film_id, l.film_id AS other_film_id FROM likes AS l WHERE l.user_id = ? AND l.film_id <> ?
+                    UNION ALL
+                    SELECT l.film_id, ? FROM likes AS l WHERE l.user_id = ? AND l.film_id <> ?
+                    """), filmId, userId, filmId, filmId, userId, filmId);
+        } else if (userLikes == maxUserLikes + 1) {
+            removeUserPairs(userId, filmId);
+        }
+    }
+
+    /**
+     * Пользователь снял лайк. Если до этого он был в пределах лимита, пары фильма теряют его совместный лайк,
+     * если вернулся в лимит - все пары его оставшихся фильмов получают по совместному лайку.
+     */
+    void likeRemoved(int filmId, int userId) {
+        int userLikes = countUserLikes(userId);
+        if (userLikes < maxUserLikes) {
+            jdbcTemplate.update("UPDATE film_co_likes SET co_likes = co_likes - 1 WHERE film_id = ? " +
+                    "AND other_film_id IN (SELECT film_id FROM likes WHERE user_id = ?)", filmId, userId);
+            jdbcTemplate.update("UPDATE film_co_likes SET co_likes = co_likes - 1 WHERE other_film_id = ? " +
+                    "AND film_id IN (SELECT film_id FROM likes WHERE user_id = ?)", filmId, userId);
+            jdbcTemplate.update("DELETE FROM film_co_likes WHERE film_id = ? AND co_likes <= 0", filmId);
+            jdbcTemplate.update("DELETE FROM film_co_likes WHERE other_film_id = ? AND co_likes <= 0", filmId);
+        } else if (userLikes == maxUserLikes) {
+            addUserPairs(userId);
+        }
+    }
+
+    /**
+     * Вызывается до удаления пользователя, пока его лайки еще есть: пары его фильмов теряют по совместному лайку,
+     * если пользователь был в пределах лимита.
+     */
+    void userDeleting(int userId) {
+        if (countUserLikes(userId) <= maxUserLikes) {
+            jdbcTemplate.update("UPDATE film_co_likes SET co_likes = co_likes - 1 " +
+                    "WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = ?) " +
+                    "AND other_film_id IN (SELECT film_id FROM likes WHERE user_id = ?)", userId, userId);
+            jdbcTemplate.update("DELETE FROM film_co_likes " +
+                    "WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = ?) AND co_likes <= 0", userId);
+        }
+    }
+
+    /**
+     * Вызывается до удаления фильма: возвращает пользователей, лайкнувших фильм, у которых ровно на один лайк больше
+     * лимита. Удаление фильма вместе с лайками возвращает их в лимит, и после него их пары нужно добавить через
+     * addUserPairs. Пары самого фильма удаляются каскадом.
+     */
+    List<Integer> findUsersBackInLimitAfterFilmDelete(int filmId) {
+        String sql = """
+                SELECT l.user_id
+                FROM likes AS l
+                WHERE l.film_id = ?
+                  AND (SELECT COUNT(*) FROM likes AS u WHERE u.user_id = l.user_id) = ?
+                """;
+        return jdbcTemplate.queryForList(sql, Integer.class, filmId, maxUserLikes + 1);
+    }
+
+    /**
+     * Все пары фильмов пользователя получают по совместному лайку.
+     */
+    void addUserPairs(int userId) {
+        jdbcTemplate.update(MERGE_PAIRS.formatted("""
+                SELECT a.film_id, b.film_id AS other_film_id
+                FROM likes AS a
+                         INNER JOIN likes AS b ON b.user_id = a.user_id AND b.film_id <> a.film_id
+                WHERE a.user_id = ?
+                """), userId);
+    }
+
+    private int countUserLikes(int userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE user_id = ?", Integer.class, userId);
+    }
+
+    /**
+     * Пользователь вышел за лимит лайком фильма filmId: пары его прежних фильмов теряют по совместному лайку.
+     */
+    private void removeUserPairs(int userId, int filmId) {
+        jdbcTemplate.update("UPDATE film_co_likes SET co_likes = co_likes - 1 " +
+                        "WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = ? AND film_id <> ?) " +
+                        "AND other_film_id IN (SELECT film_id FROM likes WHERE user_id = ? AND film_id <> ?)",
+                userId, filmId, userId, filmId);
+        jdbcTemplate.update("DELETE FROM film_co_likes WHERE co_likes <= 0 " +
+                "AND film_id IN (SELECT film_id FROM likes WHERE user_id = ? AND film_id <> ?)", userId, filmId);
+    }
+}
@@ -4,22 +4,32 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.cache.ReferenceData;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -27,128 +37,340 @@ import java.util.stream.Collectors;
 @Repository
 public class FilmDbStorage implements FilmStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceData referenceData;
+    private final FilmCoLikes filmCoLikes;
 
-    private static final String SUB_QUERY = """
+    private static final String SELECT_ALL_FILMS = """
             SELECT f.film_id,
                    f.name,
                    f.description,
                    f.releaseDate,
                    f.duration,
                    f.rating_id,
-                   COUNT(l.film_id) AS liked_users_count
+                   f.likes_count
             FROM films AS f
-            LEFT JOIN likes AS l ON f.film_id = l.film_id
-            GROUP BY f.film_id
             """;
 
-    private static final String SELECT_FILMS_WITH_SUB_QUERY = """
-            SELECT sub.*,
-                   l.user_id AS liked_user_id,
-                   g.genre_id,
-                   g.name    AS genre_name,
-                   mpa.name  AS rating_name,
-                   d.director_id,
-                   d.name    AS director_name
-            FROM (%s) AS sub
-                     LEFT JOIN likes AS l ON l.film_id = sub.film_id
-                     LEFT JOIN film_genres AS fg ON fg.film_id = sub.film_id
-                     LEFT JOIN genres AS g ON g.genre_id = fg.genre_id
-                     LEFT JOIN mpa_rating AS mpa ON mpa.rating_id = sub.rating_id
-                     LEFT JOIN film_directors AS fd ON fd.film_id = sub.film_id
-                     LEFT JOIN directors AS d ON d.director_id = fd.director_id
+    private static final String SELECT_DIRECTOR_FILMS = """
+            SELECT f.film_id,
+                   f.name,
+                   f.description,
+                   f.releaseDate,
+                   f.duration,
+                   f.rating_id,
+                   f.likes_count
+            FROM film_directors AS fd
+                     INNER JOIN films AS f ON f.film_id = fd.film_id
+            WHERE fd.director_id = ?
+            """;
+
+    private static final String SELECT_LIKES = "SELECT film_id, user_id FROM likes WHERE film_id IN (%s)";
+
+    private static final String SELECT_GENRES = """
+            SELECT fg.film_id, fg.genre_id
+            FROM film_genres AS fg
+            WHERE fg.film_id IN (%s)
+            ORDER BY fg.film_id, fg.genre_id
             """;
 
-    private static final String SELECT_ALL_FILMS = SELECT_FILMS_WITH_SUB_QUERY.formatted(SUB_QUERY);
+    private static final String SELECT_DIRECTORS = """
+            SELECT fd.film_id, fd.director_id
+            FROM film_directors AS fd
+            WHERE fd.film_id IN (%s)
+            """;
+
+    private static final String SELECT_LINKS = """
+            SELECT 'G' AS kind, genre_id AS linked_id FROM film_genres WHERE film_id = ?
+            UNION ALL
+            SELECT 'D', director_id FROM film_directors WHERE film_id = ?
+            UNION ALL
+            SELECT 'L', user_id FROM likes WHERE film_id = ?
+            """;
+
+    private static final Links GENRE_LINKS = new Links("film_genres", "genre_id");
+
+    private static final Links DIRECTOR_LINKS = new Links("film_directors", "director_id");
+
+    private static final String SELECT_FILM_IDS_BY_DIRECTOR_NAME = """
+            SELECT fd.film_id
+            FROM film_directors AS fd
+                     INNER JOIN directors AS d ON d.director_id = fd.director_id
+            WHERE UPPER(d.name) LIKE UPPER(?)
+            """;
+
+    /**
+     * Максимальное количество id в одном IN (...) при догрузке лайков, жанров и режиссеров.
+     */
+    private static final int IN_BATCH_SIZE = 500;
+
+    private static final int EXPORT_BATCH_SIZE = 100;
+
+    private static final String INSERT_FILM =
+            "INSERT INTO films (name, description, releaseDate, duration, rating_id) VALUES (?, ?, ?, ?, ?)";
 
+    /**
+     * Фильм и его связи записываются в одной транзакции, без повторного чтения:
+     * ответ собирается из переданного фильма, сгенерированного id и справочников.
+     */
     @Override
+    @Transactional
     public Film create(Film film) {
-        String sql = "INSERT INTO films (name, description, releaseDate, duration, rating_id) VALUES (?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(
                 connection -> {
-                    PreparedStatement ps = connection.prepareStatement(sql, new String[]{"film_id"});
-                    ps.setString(1, film.getName());
-                    ps.setString(2, film.getDescription());
-                    ps.setDate(3, Date.valueOf(film.getReleaseDate()));
-                    ps.setInt(4, film.getDuration());
-                    ps.setInt(5, film.getMpa().getId());
+                    PreparedStatement ps = connection.prepareStatement(INSERT_FILM, new String[]{"film_id"});
+                    setFilm(ps, film);
                     return ps;
                 }, keyHolder);
-        film.setId(Objects.requireNonNull(keyHolder.getKey()).intValue());
-        updateDirectors(film.getDirectors(), film.getId());
-        updateGenres(film.getGenres(), film.getId());
+        int id = Objects.requireNonNull(keyHolder.getKey()).intValue();
+        Set<Integer> genreIds = genreIds(film);
+        Set<Integer> directorIds = directorIds(film);
+        updateLinks(GENRE_LINKS, id, Set.of(), genreIds);
+        updateLinks(DIRECTOR_LINKS, id, Set.of(), directorIds);
+
+        film.setId(id);
+        return written(film, genreIds, directorIds, Set.of());
+    }
 
-        return findFilmById(film.getId()).orElse(null);
+    /**
+     * Фильмы пакета записываются в одной транзакции: строки films - одним JDBC-пакетом с возвратом
+     * сгенерированных id, связи с жанрами и режиссерами - еще по одному пакету на все фильмы.
+     * Ответ собирается без повторного чтения, как при создании одного фильма.
+     */
+    @Override
+    @Transactional
+    public List<Film> createAll(List<Film> films) {
+        int[] ids = jdbcTemplate.execute((ConnectionCallback<int[]>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_FILM, new String[]{"film_id"})) {
+                for (Film film : films) {
+                    setFilm(ps, film);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                int[] generated = new int[films.size()];
+                int count = 0;
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        generated[count++] = keys.getInt(1);
+                    }
+                }
+                if (count != films.size()) {
+                    throw new IllegalStateException(String.format(
+                            "Получено %d сгенерированных id для %d фильмов", count, films.size()));
+                }
+                return generated;
+            }
+        });
+
+        List<Film> written = new ArrayList<>(films.size());
+        List<int[]> genreLinks = new ArrayList<>();
+        List<int[]> directorLinks = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            int id = Objects.requireNonNull(ids)[i];
+            Set<Integer> genreIds = genreIds(film);
+            Set<Integer> directorIds = directorIds(film);
+            genreIds.forEach(genreId -> genreLinks.add(new int[]{id, genreId}));
+            directorIds.forEach(directorId -> directorLinks.add(new int[]{id, directorId}));
+            film.setId(id);
+            written.add(written(film, genreIds, directorIds, Set.of()));
+        }
+        insertLinks(GENRE_LINKS, genreLinks);
+        insertLinks(DIRECTOR_LINKS, directorLinks);
+        return written;
     }
 
+    /**
+     * Текущие жанры, режиссеры и лайки фильма читаются одним запросом по индексам film_id,
+     * затем удаляются только лишние связи и вставляются только новые. Все в одной транзакции,
+     * поэтому читатели не видят фильм с частично обновленными связями.
+     */
     @Override
+    @Transactional
     public Film update(Film film) {
         int id = film.getId();
         String sql = "UPDATE films SET name = ?, description = ?, releaseDate = ?, duration = ?, rating_id = ? " +
                 "WHERE film_id = ?";
         jdbcTemplate.update(sql, film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(),
                 film.getMpa().getId(), id);
-        updateGenres(film.getGenres(), id);
-        updateDirectors(film.getDirectors(), id);
 
-        return findFilmById(id).orElse(null);
+        Set<Integer> currentGenres = new HashSet<>();
+        Set<Integer> currentDirectors = new HashSet<>();
+        Set<Integer> likes = new HashSet<>();
+        jdbcTemplate.query(SELECT_LINKS, (RowCallbackHandler) rs -> {
+            int linkedId = rs.getInt("linked_id");
+            switch (rs.getString("kind")) {
+                case "G" -> currentGenres.add(linkedId);
+                case "D" -> currentDirectors.add(linkedId);
+                default -> likes.add(linkedId);
+            }
+        }, id, id, id);
+
+        Set<Integer> genreIds = genreIds(film);
+        Set<Integer> directorIds = directorIds(film);
+        updateLinks(GENRE_LINKS, id, currentGenres, genreIds);
+        updateLinks(DIRECTOR_LINKS, id, currentDirectors, directorIds);
+
+        return written(film, genreIds, directorIds, likes);
+    }
+
+    @Override
+    public List<Film> findAllFilms(Set<FilmField> fields) {
+        String sql = SELECT_ALL_FILMS + "ORDER BY f.film_id";
+        return queryFilms(sql, fields);
+    }
+
+    @Override
+    public List<Film> findFilmsPage(int after, int limit, Set<FilmField> fields) {
+        String sql = SELECT_ALL_FILMS + "WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?";
+        return queryFilms(sql, fields, after, limit);
+    }
+
+    /**
+     * Выгрузка всего каталога без буферизации: основной запрос читается однонаправленным курсором
+     * с ограниченным fetch size, фильмы догружаются и отдаются потребителю пачками по EXPORT_BATCH_SIZE.
+     * Транзакция только для чтения держит одно соединение и на курсор, и на догрузку связей пачек, иначе
+     * каждая выгрузка занимала бы два соединения пула и параллельные выгрузки могли бы исчерпать его.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAllFilms(Consumer<List<Film>> batchConsumer) {
+        String sql = SELECT_ALL_FILMS + "ORDER BY f.film_id";
+        List<Film> batch = new ArrayList<>(EXPORT_BATCH_SIZE);
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement ps = connection.prepareStatement(sql,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(EXPORT_BATCH_SIZE);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> {
+                    batch.add(makeFilm(rs));
+                    if (batch.size() == EXPORT_BATCH_SIZE) {
+                        loadRelations(batch, FilmField.ALL);
+                        batchConsumer.accept(batch);
+                        batch.clear();
+                    }
+                });
+        if (!batch.isEmpty()) {
+            loadRelations(batch, FilmField.ALL);
+            batchConsumer.accept(batch);
+        }
+    }
+
+    @Override
+    public Optional<Film> findFilmById(int id, Set<FilmField> fields) {
+        String sql = SELECT_ALL_FILMS + "WHERE f.film_id = ?";
+        return queryFilms(sql, fields, id).stream().findFirst();
     }
 
     @Override
-    public List<Film> findAllFilms() {
-        String sql = SELECT_ALL_FILMS + "ORDER BY sub.film_id";
-        return jdbcTemplate.query(sql, new FilmListExtractor());
+    public boolean existsById(int id) {
+        return ExistsQueries.existsById(jdbcTemplate, "films", "film_id", id);
     }
 
     @Override
-    public Optional<Film> findFilmById(int id) {
-        String sql = SELECT_ALL_FILMS + "WHERE sub.film_id = ?";
+    public boolean existsAll(Collection<Integer> ids) {
+        return ExistsQueries.existsAll(jdbcTemplate, "films", "film_id", ids);
+    }
 
-        List<Film> filmList = jdbcTemplate.query(sql, new FilmListExtractor(), id);
-        return filmList != null ? filmList.stream().findFirst() : Optional.empty();
+    @Override
+    public void forEachFilmId(IntConsumer consumer) {
+        String sql = "SELECT film_id FROM films";
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> consumer.accept(rs.getInt("film_id")));
     }
 
+    /**
+     * Лайки и пары film_co_likes фильма удаляются каскадом. Пользователи, которых удаление вернуло в лимит лайков,
+     * снова дают совместные лайки своим оставшимся фильмам - в той же транзакции.
+     */
     @Override
     public void deleteFilmById(int id) {
-        String sql = "DELETE FROM FILMS WHERE film_id = ?";
-        jdbcTemplate.update(sql, id);
+        filmCoLikes.inTransaction(() -> {
+            List<Integer> backInLimit = filmCoLikes.findUsersBackInLimitAfterFilmDelete(id);
+            String sql = "DELETE FROM FILMS WHERE film_id = ?";
+            jdbcTemplate.update(sql, id);
+            backInLimit.forEach(filmCoLikes::addUserPairs);
+            return null;
+        });
     }
 
+    /**
+     * Фильтры применяются в самом запросе до LIMIT: жанры - через индекс film_genres (genre_id, film_id),
+     * годы - диапазоном по индексу films (release_year, likes_count DESC, film_id).
+     */
     @Override
-    public List<Film> findPopular(Integer count, Integer genreId, Integer year) {
-        String subQuery = SUB_QUERY + "ORDER BY liked_users_count DESC";
+    public List<Film> findPopular(Integer count, FilmFilter filter, Set<FilmField> fields) {
+        List<Object> args = new ArrayList<>();
+        String sql = SELECT_ALL_FILMS + filterConditions(filter, args) + "ORDER BY f.likes_count DESC, f.film_id";
         if (count != null) {
-            subQuery += " LIMIT %d".formatted(count);
+            sql += " LIMIT ?";
+            args.add(count);
         }
-        String sql = SELECT_FILMS_WITH_SUB_QUERY.formatted(subQuery);
-
-        if (genreId != null && year != null) {
-            sql += "WHERE sub.film_id IN (SELECT film_id FROM film_genres WHERE genre_id = ?) AND EXTRACT(YEAR FROM sub.releasedate) = ?";
-            return jdbcTemplate.query(sql, new FilmListExtractor(), genreId, year);
-        } else if (genreId != null) {
-            sql += "WHERE sub.film_id IN (SELECT film_id FROM film_genres WHERE genre_id = ?)";
-            return jdbcTemplate.query(sql, new FilmListExtractor(), genreId);
-        } else if (year != null) {
-            sql += "WHERE EXTRACT(YEAR FROM sub.releasedate) = ?";
-            return jdbcTemplate.query(sql, new FilmListExtractor(), year);
+        return queryFilms(sql, fields, args.toArray());
+    }
+
+    /**
+     * Тренды без рейтинга в памяти, пока он строится: оценка фильма - сумма весов 2^((t - now) / halfLife)
+     * его лайков по likes.created_at, как в {@link ru.yandex.practicum.filmorate.index.TrendingFilmsIndex}.
+     * Проходит по всем лайкам, поэтому используется только до построения рейтинга.
+     */
+    @Override
+    public List<Film> findTrending(Integer count, FilmFilter filter, Duration halfLife, Set<FilmField> fields) {
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.from(Instant.now()));
+        args.add((double) halfLife.toMillis());
+        String sql = SELECT_ALL_FILMS + """
+                LEFT JOIN (SELECT l.film_id, SUM(POWER(2, DATEDIFF(MILLISECOND, ?, l.created_at) / ?)) AS score
+                           FROM likes AS l
+                           GROUP BY l.film_id) AS t ON t.film_id = f.film_id
+                """ + filterConditions(filter, args) + "ORDER BY COALESCE(t.score, 0) DESC, f.film_id";
+        if (count != null) {
+            sql += " LIMIT ?";
+            args.add(count);
         }
+        return queryFilms(sql, fields, args.toArray());
+    }
 
-        return jdbcTemplate.query(sql, new FilmListExtractor());
+    /**
+     * Условие WHERE по фильтру рейтинга или пустая строка, параметры добавляются в args.
+     */
+    private static String filterConditions(FilmFilter filter, List<Object> args) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.hasGenres()) {
+            conditions.add("f.film_id IN (SELECT fg.film_id FROM film_genres AS fg WHERE fg.genre_id IN (%s))"
+                    .formatted(placeholders(filter.getGenreIds().size())));
+            args.addAll(filter.getGenreIds());
+        }
+        if (filter.getFromYear() != null) {
+            conditions.add("f.release_year >= ?");
+            args.add(filter.getFromYear());
+        }
+        if (filter.getToYear() != null) {
+            conditions.add("f.release_year <= ?");
+            args.add(filter.getToYear());
+        }
+        return conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions) + " ";
     }
 
+    /**
+     * Фильмы режиссера находятся по индексу film_directors (director_id, film_id),
+     * сортировка и страница применяются только к ним. Без сортировки фильмы идут по возрастанию id.
+     */
     @Override
-    public List<Film> findFilmsByDirectorID(int id, String sortedBy) {
-        String sql = SELECT_ALL_FILMS;
-        sql += "WHERE d.director_id = ? ";
-        if (!sortedBy.isBlank()) {
-            if (sortedBy.equals("year")) {
-                sql += "ORDER BY sub.releasedate";
-            } else if (sortedBy.equals("likes")) {
-                sql += "ORDER BY sub.liked_users_count DESC";
-            }
+    public List<Film> findFilmsByDirectorID(int id, String sortedBy, Integer limit, int offset, Set<FilmField> fields) {
+        String sql = SELECT_DIRECTOR_FILMS;
+        if (sortedBy.equals("year")) {
+            sql += "ORDER BY f.releasedate, f.film_id ";
+        } else if (sortedBy.equals("likes")) {
+            sql += "ORDER BY f.likes_count DESC, f.film_id ";
+        } else {
+            sql += "ORDER BY f.film_id ";
         }
-
-        return jdbcTemplate.query(sql, new FilmListExtractor(), id);
+        if (limit == null) {
+            return queryFilms(sql + "OFFSET ?", fields, id, offset);
+        }
+        return queryFilms(sql + "LIMIT ? OFFSET ?", fields, id, limit, offset);
     }
 
     /**
@@ -203,97 +425,224 @@ public class FilmDbStorage implements FilmStorage {
             return Collections.emptyList();
         }
 
-        return jdbcTemplate.query(
-                SELECT_ALL_FILMS + "WHERE sub.film_id IN (?)",
-                new FilmListExtractor(),
-                recommendedFilmIds.stream()
-                        .map(Object::toString)
-                        .collect(Collectors.joining(", "))
-        );
+        return findFilmsByIds(recommendedFilmIds.stream().sorted().toList(), FilmField.ALL);
     }
 
     @Override
-    public List<Film> findCommonFilms(int userId, int friendId) {
+    public List<Film> findCommonFilms(int userId, int friendId, Set<FilmField> fields) {
         String sql = SELECT_ALL_FILMS +
-                "WHERE sub.film_id IN (" +
+                "WHERE f.film_id IN (" +
                 "SELECT film_id FROM likes WHERE user_id = ? " +
                 "INTERSECT " +
                 "SELECT film_id FROM likes WHERE user_id = ?)";
 
-        return jdbcTemplate.query(sql, new FilmListExtractor(), userId, friendId);
+        return queryFilms(sql, fields, userId, friendId);
     }
 
     @Override
-    public List<Film> searchFilmsByDirAndName(String query) {
+    public List<Film> searchFilmsByDirAndName(String query, Set<FilmField> fields) {
         String name = "%" + query + "%";
         String sql = SELECT_ALL_FILMS +
-                "WHERE UPPER(sub.name) LIKE UPPER(?) " +
-                "OR UPPER(d.name) LIKE UPPER(?) " +
-                "ORDER BY sub.film_id DESC";
+                "WHERE UPPER(f.name) LIKE UPPER(?) " +
+                "OR f.film_id IN (" + SELECT_FILM_IDS_BY_DIRECTOR_NAME + ") " +
+                "ORDER BY f.film_id DESC";
 
-        return jdbcTemplate.query(sql, new FilmListExtractor(), name, name);
+        return queryFilms(sql, fields, name, name);
     }
 
     @Override
-    public List<Film> searchFilmsByName(String query) {
+    public List<Film> searchFilmsByName(String query, Set<FilmField> fields) {
         String name = "%" + query + "%";
         String sql = SELECT_ALL_FILMS +
-                "WHERE UPPER(sub.name) LIKE UPPER(?) " +
-                "ORDER BY sub.film_id DESC";
+                "WHERE UPPER(f.name) LIKE UPPER(?) " +
+                "ORDER BY f.film_id DESC";
 
-        return jdbcTemplate.query(sql, new FilmListExtractor(), name);
+        return queryFilms(sql, fields, name);
     }
 
     @Override
-    public List<Film> searchFilmsByDir(String query) {
+    public List<Film> searchFilmsByDir(String query, Set<FilmField> fields) {
         String name = "%" + query + "%";
         String sql = SELECT_ALL_FILMS +
-                "WHERE UPPER(d.name) LIKE UPPER(?) " +
-                "ORDER BY sub.film_id DESC";
-
-        return jdbcTemplate.query(sql, new FilmListExtractor(), name);
-    }
-
-    private void updateGenres(Set<Genre> genres, int id) {
-        jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", id);
-        if (genres != null && !genres.isEmpty()) {
-            String sql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
-            Genre[] g = genres.toArray(new Genre[0]);
-            jdbcTemplate.batchUpdate(
-                    sql,
-                    new BatchPreparedStatementSetter() {
-                        @Override
-                        public void setValues(PreparedStatement ps, int i) throws SQLException {
-                            ps.setInt(1, id);
-                            ps.setInt(2, g[i].getId());
-                        }
-
-                        public int getBatchSize() {
-                            return genres.size();
-                        }
-                    });
+                "WHERE f.film_id IN (" + SELECT_FILM_IDS_BY_DIRECTOR_NAME + ") " +
+                "ORDER BY f.film_id DESC";
+
+        return queryFilms(sql, fields, name);
+    }
+
+    /**
+     * Загружает фильмы по списку id, сохраняя порядок списка. Несуществующие id пропускаются.
+     */
+    @Override
+    public List<Film> findFilmsByIds(List<Integer> ids, Set<FilmField> fields) {
+        Map<Integer, Film> idToFilm = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + IN_BATCH_SIZE, ids.size()));
+            String sql = SELECT_ALL_FILMS + "WHERE f.film_id IN (%s) ".formatted(placeholders(batch.size()));
+            jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), batch.toArray())
+                    .forEach(film -> idToFilm.put(film.getId(), film));
+        }
+        List<Film> films = ids.stream()
+                .map(idToFilm::get)
+                .filter(Objects::nonNull)
+                .toList();
+        loadRelations(films, fields);
+        return films;
+    }
+
+    /**
+     * Двухфазная загрузка фильмов: сначала основной запрос возвращает по одной строке на фильм,
+     * затем лайки, жанры и режиссеры догружаются отдельными запросами по набору id.
+     * Количество строк растет как сумма размеров связанных коллекций, а не как их произведение.
+     * Незапрошенные в fields коллекции не загружаются, количество лайков берется из films.likes_count.
+     * Названия жанров, рейтингов и имена режиссеров подставляются из справочников в памяти, без join.
+     */
+    private List<Film> queryFilms(String sql, Set<FilmField> fields, Object... args) {
+        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), args);
+        loadRelations(films, fields);
+        return films;
+    }
+
+    private void loadRelations(List<Film> films, Set<FilmField> fields) {
+        boolean likes = fields.contains(FilmField.LIKES);
+        boolean genres = fields.contains(FilmField.GENRES);
+        boolean directors = fields.contains(FilmField.DIRECTORS);
+        if (!likes && !genres && !directors) {
+            return;
+        }
+
+        Map<Integer, Film> idToFilm = new HashMap<>();
+        films.forEach(film -> idToFilm.put(film.getId(), film));
+        List<Integer> ids = new ArrayList<>(idToFilm.keySet());
+
+        for (int from = 0; from < ids.size(); from += IN_BATCH_SIZE) {
+            Object[] batch = ids.subList(from, Math.min(from + IN_BATCH_SIZE, ids.size())).toArray();
+            String in = placeholders(batch.length);
+
+            if (likes) {
+                jdbcTemplate.query(SELECT_LIKES.formatted(in), (RowCallbackHandler) rs ->
+                        idToFilm.get(rs.getInt("film_id")).getLikes().add(rs.getInt("user_id")), batch);
+            }
+            if (genres) {
+                jdbcTemplate.query(SELECT_GENRES.formatted(in), (RowCallbackHandler) rs ->
+                        idToFilm.get(rs.getInt("film_id")).getGenres()
+                                .add(referenceData.genre(rs.getInt("genre_id"))), batch);
+            }
+            if (directors) {
+                jdbcTemplate.query(SELECT_DIRECTORS.formatted(in), (RowCallbackHandler) rs ->
+                        idToFilm.get(rs.getInt("film_id")).getDirectors()
+                                .add(referenceData.director(rs.getInt("director_id"))), batch);
+            }
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private Film makeFilm(ResultSet rs) throws SQLException {
+        Film film = Film.builder()
+                .id(rs.getInt("film_id"))
+                .name(rs.getString("name"))
+                .description(rs.getString("description"))
+                .releaseDate(rs.getDate("releaseDate").toLocalDate())
+                .duration(rs.getInt("duration"))
+                .likesCount(rs.getInt("likes_count"))
+                .genres(new LinkedHashSet<>())
+                .build();
+
+        int ratingId = rs.getInt("rating_id");
+        if (ratingId > 0) {
+            film.setMpa(referenceData.mpa(ratingId));
+        }
+        return film;
+    }
+
+    /**
+     * Приводит связи фильма к набору wanted: удаляются только лишние, вставляются только недостающие.
+     */
+    private void updateLinks(Links links, int filmId, Set<Integer> current, Set<Integer> wanted) {
+        List<Integer> removed = current.stream().filter(linkedId -> !wanted.contains(linkedId)).toList();
+        if (!removed.isEmpty()) {
+            List<Object> args = new ArrayList<>(removed.size() + 1);
+            args.add(filmId);
+            args.addAll(removed);
+            jdbcTemplate.update("DELETE FROM %s WHERE film_id = ? AND %s IN (%s)"
+                    .formatted(links.table(), links.column(), placeholders(removed.size())), args.toArray());
         }
+        insertLinks(links, wanted.stream()
+                .filter(linkedId -> !current.contains(linkedId))
+                .map(linkedId -> new int[]{filmId, linkedId})
+                .toList());
     }
 
-    private void updateDirectors(Set<Director> directors, int director_id) {
-        jdbcTemplate.update("DELETE FROM FILM_DIRECTORS WHERE film_id = ?", director_id);
-        if (directors != null && !directors.isEmpty()) {
-            String sql = "INSERT INTO FILM_DIRECTORS (film_id, director_id) VALUES (?, ?)";
-            Director[] g = directors.toArray(new Director[0]);
-            jdbcTemplate.batchUpdate(
-                    sql,
-                    new BatchPreparedStatementSetter() {
-                        @Override
-                        public void setValues(PreparedStatement ps, int i) throws SQLException {
-                            ps.setInt(1, director_id);
-                            ps.setInt(2, g[i].getId());
-                        }
-
-                        public int getBatchSize() {
-                            return directors.size();
-                        }
-                    });
+    /**
+     * Вставляет пары (film_id, связанный id) одним JDBC-пакетом.
+     */
+    private void insertLinks(Links links, List<int[]> pairs) {
+        if (pairs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO %s (film_id, %s) VALUES (?, ?)".formatted(links.table(), links.column()),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setInt(1, pairs.get(i)[0]);
+                        ps.setInt(2, pairs.get(i)[1]);
+                    }
+
+                    public int getBatchSize() {
+                        return pairs.size();
+                    }
+                });
+    }
+
+    private static void setFilm(PreparedStatement ps, Film film) throws SQLException {
+        ps.setString(1, film.getName());
+        ps.setString(2, film.getDescription());
+        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+        ps.setInt(4, film.getDuration());
+        ps.setInt(5, film.getMpa().getId());
+    }
+
+    /**
+     * Ключи film_genres и film_directors - (film_id, genre_id) и (film_id, director_id),
+     * поэтому повторы в запросе отбрасываются по id.
+     */
+    private static Set<Integer> genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return Set.of();
         }
+        return film.getGenres().stream().map(Genre::getId).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private static Set<Integer> directorIds(Film film) {
+        return film.getDirectors().stream().map(Director::getId).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Записанный фильм в том же виде, что и при чтении из базы: жанры по возрастанию id, названия из справочников.
+     */
+    private Film written(Film film, Set<Integer> genreIds, Set<Integer> directorIds, Set<Integer> likes) {
+        LinkedHashSet<Genre> genres = new LinkedHashSet<>();
+        genreIds.forEach(genreId -> genres.add(referenceData.genre(genreId)));
+        Film written = Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .likesCount(likes.size())
+                .mpa(referenceData.mpa(film.getMpa().getId()))
+                .genres(genres)
+                .build();
+        directorIds.forEach(directorId -> written.getDirectors().add(referenceData.director(directorId)));
+        written.getLikes().addAll(likes);
+        return written;
+    }
+
+    private record Links(String table, String column) {
     }
 
     private static class UserFilmExtractor implements ResultSetExtractor<Map<Integer, LinkedHashSet<Integer>>> {
@@ -314,53 +663,4 @@ public class FilmDbStorage implements FilmStorage {
             return userIdToFilmIds;
         }
     }
-
-    private static class FilmListExtractor implements ResultSetExtractor<List<Film>> {
-
-        @Override
-        public List<Film> extractData(ResultSet resultSet) throws SQLException, DataAccessException {
-            LinkedHashMap<Integer, Film> idToFilm = new LinkedHashMap<>();
-
-            while (resultSet.next()) {
-                Integer filmId = resultSet.getInt("film_id");
-                if (!idToFilm.containsKey(filmId)) {
-                    Film film = Film.builder()
-                            .id(filmId)
-                            .name(resultSet.getString("name"))
-                            .description(resultSet.getString("description"))
-                            .releaseDate(resultSet.getDate("releaseDate").toLocalDate())
-                            .duration(resultSet.getInt("duration"))
-                            .genres(new LinkedHashSet<>())
-                            .build();
-                    idToFilm.put(filmId, film);
-                }
-
-                Film film = idToFilm.get(filmId);
-                int likedUserId = resultSet.getInt("liked_user_id");
-                if (likedUserId > 0) {
-                    film.getLikes().add(likedUserId);
-                }
-
-                int ratingId = resultSet.getInt("rating_id");
-                if (ratingId > 0) {
-                    Mpa rating = new Mpa(ratingId, resultSet.getString("rating_name"));
-                    film.setMpa(rating);
-                }
-
-                int genreId = resultSet.getInt("genre_id");
-                if (genreId > 0) {
-                    Genre genre = new Genre(genreId, resultSet.getString("genre_name"));
-                    film.getGenres().add(genre);
-                }
-
-                int directorId = resultSet.getInt("director_id");
-                if (directorId > 0) {
-                    Director director = new Director(directorId, resultSet.getString("director_name"));
-                    film.getDirectors().add(director);
-                }
-            }
-
-            return new ArrayList<>(idToFilm.values());
-        }
-    }
 }
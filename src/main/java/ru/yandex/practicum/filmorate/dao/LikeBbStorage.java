@@ -2,29 +2,149 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.storage.LikeStorage;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
 @Slf4j
 @RequiredArgsConstructor
 @Repository
 public class LikeBbStorage implements LikeStorage {
+    /**
+     * Максимальное количество id в одном IN (...).
+     */
+    private static final int IN_BATCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final FilmCoLikes filmCoLikes;
 
+    /**
+     * Лайк, счетчик films.likes_count и счетчики совместных лайков film_co_likes меняются в одной транзакции,
+     * счетчики меняются только если лайк действительно добавлен. Повторный лайк, вставленный параллельно,
+     * отклоняется первичным ключом likes и дает false, любая другая ошибка откатывает транзакцию целиком.
+     * Время лайка likedAt передается сервисом, чтобы совпадать со временем события в ленте.
+     * Возвращает true, если лайк добавлен.
+     */
     @Override
-    public void addLike(int filmId, int userId) {
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
-        try {
-            jdbcTemplate.update(sql, filmId, userId);
-        } catch (Exception e) {
-            log.warn(e.getMessage());
+    public boolean addLike(int filmId, int userId, Instant likedAt) {
+        return filmCoLikes.inTransaction(() -> {
+            if (!insertLike(filmId, userId, likedAt)) {
+                return false;
+            }
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE film_id = ?", filmId);
+            filmCoLikes.likeAdded(filmId, userId);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean removeLike(int filmId, int userId) {
+        return filmCoLikes.inTransaction(() -> {
+            String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+            if (jdbcTemplate.update(sql, filmId, userId) == 0) {
+                return false;
+            }
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 WHERE film_id = ?", filmId);
+            filmCoLikes.likeRemoved(filmId, userId);
+            return true;
+        });
+    }
+
+    @Override
+    public List<Integer> findFilmIdsByUserId(int userId) {
+        String sql = "SELECT film_id FROM likes WHERE user_id = ?";
+        return jdbcTemplate.queryForList(sql, Integer.class, userId);
+    }
+
+    /**
+     * Обходит все лайки построчно, без загрузки таблицы в список.
+     */
+    @Override
+    public void forEachLike(LikeConsumer consumer) {
+        String sql = "SELECT film_id, user_id FROM likes";
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> consumer.accept(rs.getInt("film_id"), rs.getInt("user_id")));
+    }
+
+    /**
+     * Пересчитывает films.likes_count по таблице likes для фильмов, где счетчик разошелся с данными.
+     * Возвращает id исправленных фильмов.
+     */
+    @Override
+    @Transactional
+    public List<Integer> repairLikesCount() {
+        String sql = """
+                SELECT f.film_id
+                FROM films AS f
+                WHERE f.likes_count <> (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.film_id)
+                """;
+        List<Integer> ids = jdbcTemplate.queryForList(sql, Integer.class);
+        for (int from = 0; from < ids.size(); from += IN_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + IN_BATCH_SIZE, ids.size()));
+            jdbcTemplate.update("UPDATE films AS f " +
+                    "SET likes_count = (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.film_id) " +
+                    "WHERE f.film_id IN (%s)".formatted(String.join(", ", Collections.nCopies(batch.size(), "?"))),
+                    batch.toArray());
+        }
+        return ids;
+    }
+
+    /**
+     * Сверяет film_co_likes с таблицей likes и пересчитывает ее целиком, если они разошлись.
+     * Сверяется сумма счетчиков: каждый пользователь в пределах лимита с k лайками дает k * (k - 1) совместных лайков.
+     * Возвращает количество записанных пар или 0, если таблица согласована.
+     */
+    @Override
+    @Transactional
+    public int backfillCoLikes() {
+        long expected = jdbcTemplate.queryForObject("""
+                SELECT COALESCE(SUM(CAST(u.likes AS BIGINT) * (u.likes - 1)), 0)
+                FROM (SELECT COUNT(*) AS likes FROM likes GROUP BY user_id) AS u
+                WHERE u.likes <= ?
+                """, Long.class, filmCoLikes.maxUserLikes());
+        long actual = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(CAST(co_likes AS BIGINT)), 0) FROM film_co_likes",
+                Long.class);
+        if (expected == actual) {
+            return 0;
         }
+        log.warn("Совместные лайки разошлись с лайками: {} вместо {}", actual, expected);
+        jdbcTemplate.update("DELETE FROM film_co_likes");
+        String sql = """
+                INSERT INTO film_co_likes (film_id, other_film_id, co_likes)
+                SELECT a.film_id, b.film_id, COUNT(*)
+                FROM likes AS a
+                         INNER JOIN likes AS b ON b.user_id = a.user_id AND b.film_id <> a.film_id
+                WHERE a.user_id IN (SELECT user_id FROM likes GROUP BY user_id HAVING COUNT(*) <= ?)
+                GROUP BY a.film_id, b.film_id
+                """;
+        return jdbcTemplate.update(sql, filmCoLikes.maxUserLikes());
     }
 
+    /**
+     * Id фильмов, которые чаще всего лайкают вместе с фильмом, по убыванию числа совместных лайков.
+     */
     @Override
-    public void removeLike(int filmId, int userId) {
-        String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, filmId, userId);
+    public List<Integer> findSimilarFilmIds(int filmId, int limit) {
+        String sql = "SELECT other_film_id FROM film_co_likes WHERE film_id = ? " +
+                "ORDER BY co_likes DESC, other_film_id LIMIT ?";
+        return jdbcTemplate.queryForList(sql, Integer.class, filmId, limit);
+    }
+
+    private boolean insertLike(int filmId, int userId, Instant likedAt) {
+        String sql = "INSERT INTO likes (film_id, user_id, created_at) " +
+                "SELECT ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+        try {
+            return jdbcTemplate.update(sql, filmId, userId, Timestamp.from(likedAt), filmId, userId) > 0;
+        } catch (DuplicateKeyException e) {
+            log.warn(e.getMessage());
+            return false;
+        }
     }
 }
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.dao;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
@@ -13,9 +14,14 @@ import ru.yandex.practicum.filmorate.storage.ReviewStorage;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @RequiredArgsConstructor
 @Repository
@@ -77,6 +83,42 @@ public class ReviewDbStorage implements ReviewStorage {
         return jdbcTemplate.query(sql, (rs, rowNum) -> makeReview(rs), id).stream().findFirst();
     }
 
+    @Override
+    public boolean existsById(int id) {
+        return ExistsQueries.existsById(jdbcTemplate, "reviews", "review_id", id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Integer> ids) {
+        return ExistsQueries.existsAll(jdbcTemplate, "reviews", "review_id", ids);
+    }
+
+    /**
+     * Загружает отзывы по первичному ключу, сохраняя порядок списка. Несуществующие id пропускаются.
+     */
+    @Override
+    public List<Review> findByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String sql = FIND_ALL_QUERY + " WHERE review_id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        Map<Integer, Review> idToReview = new HashMap<>();
+        jdbcTemplate.query(sql, (rs, rowNum) -> makeReview(rs), ids.toArray())
+                .forEach(review -> idToReview.put(review.getId(), review));
+        return ids.stream()
+                .map(idToReview::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Обходит все отзывы построчно, без загрузки таблицы в список.
+     */
+    @Override
+    public void forEachReview(Consumer<Review> consumer) {
+        jdbcTemplate.query(FIND_ALL_QUERY, (RowCallbackHandler) rs -> consumer.accept(makeReview(rs)));
+    }
+
     private Review makeReview(ResultSet rs) throws SQLException {
         return Review.builder()
                 .id(rs.getInt("review_id"))
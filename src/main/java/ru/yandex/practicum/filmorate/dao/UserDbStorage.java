@@ -2,9 +2,11 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
@@ -12,14 +14,17 @@ import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 
 @RequiredArgsConstructor
 @Repository
 public class UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final FilmCoLikes filmCoLikes;
 
     @Override
     public User create(User user) {
@@ -53,12 +58,37 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public Optional<User> findUserById(int id) {
-        String sql = "SELECT * FROM users WHERE user_id = ?";
+        String sql = "SELECT user_id, login, name, email, birthday FROM users WHERE user_id = ?";
         return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), id).stream().findFirst();
     }
 
     @Override
+    public boolean existsById(int id) {
+        return ExistsQueries.existsById(jdbcTemplate, "users", "user_id", id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Integer> ids) {
+        return ExistsQueries.existsAll(jdbcTemplate, "users", "user_id", ids);
+    }
+
+    @Override
+    public void forEachUserId(IntConsumer consumer) {
+        String sql = "SELECT user_id FROM users";
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> consumer.accept(rs.getInt("user_id")));
+    }
+
+    /**
+     * Лайки пользователя удаляются каскадно, поэтому счетчики лайков его фильмов
+     * и совместных лайков пар его фильмов уменьшаются в той же транзакции. Пары пользователя сверх лимита
+     * filmorate.similar.max-user-likes в film_co_likes не учитывались и не уменьшаются.
+     */
+    @Override
+    @Transactional
     public void deleteUserById(int id) {
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 " +
+                "WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = ?)", id);
+        filmCoLikes.userDeleting(id);
         String sql = "DELETE FROM users WHERE user_id = ?";
         jdbcTemplate.update(sql, id);
     }
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.exception;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class BatchErrorResponse extends ErrorResponse {
+    private final List<Integer> createdIds;
+    private final int failedIndex;
+
+    public BatchErrorResponse(BatchValidationException e) {
+        super(e.getMessage());
+        this.createdIds = e.getCreatedIds();
+        this.failedIndex = e.getFailedIndex();
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.exception;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Ошибка в фильме пакетной загрузки. Части пакета до ошибки уже записаны: createdIds - id созданных фильмов
+ * в порядке пакета, failedIndex - индекс фильма с ошибкой. Фильмы от createdIds.size() до конца пакета не созданы.
+ */
+@Getter
+public class BatchValidationException extends ValidationException {
+    private final List<Integer> createdIds;
+    private final int failedIndex;
+
+    public BatchValidationException(String message, List<Integer> createdIds, int failedIndex) {
+        super(message);
+        this.createdIds = List.copyOf(createdIds);
+        this.failedIndex = failedIndex;
+    }
+}
@@ -0,0 +1,222 @@
+package ru.yandex.practicum.filmorate.index;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.*;
+
+/**
+ * Рейтинг фильмов по оценке: общий, по жанрам и по годам выпуска.
+ * Каждый рейтинг - отсортированное множество по убыванию оценки, при равенстве по возрастанию id.
+ * Не потокобезопасен, синхронизацию обеспечивает владелец.
+ */
+public class FilmRanking {
+    private static final Comparator<Entry> BY_SCORE = Comparator
+            .comparingDouble((Entry entry) -> entry.score).reversed()
+            .thenComparingInt(entry -> entry.filmId);
+
+    private final Map<Integer, Entry> films = new HashMap<>();
+    private final NavigableSet<Entry> global = new TreeSet<>(BY_SCORE);
+    private final Map<Integer, NavigableSet<Entry>> byGenre = new HashMap<>();
+    private final NavigableMap<Integer, NavigableSet<Entry>> byYear = new TreeMap<>();
+
+    public void clear() {
+        films.clear();
+        global.clear();
+        byGenre.clear();
+        byYear.clear();
+    }
+
+    /**
+     * Добавляет или обновляет фильм. Если score не задан, сохраняется текущая оценка фильма или 0.
+     */
+    public void put(Film film, Double score) {
+        Entry previous = remove(film.getId());
+        double value = score != null ? score : previous != null ? previous.score : 0;
+        add(new Entry(film.getId(), value, film.getReleaseDate().getYear(), genreIds(film)));
+    }
+
+    public void delete(int filmId) {
+        remove(filmId);
+    }
+
+    /**
+     * Прибавляет delta к оценке фильма. Неизвестные фильмы пропускаются.
+     */
+    public void changeScore(int filmId, double delta) {
+        Entry previous = remove(filmId);
+        if (previous != null) {
+            add(new Entry(filmId, previous.score + delta, previous.year, previous.genreIds));
+        }
+    }
+
+    /**
+     * Умножает оценки всех фильмов на factor > 0. Порядок в рейтингах при этом не меняется.
+     */
+    public void scaleScores(double factor) {
+        List<Entry> entries = new ArrayList<>(films.values());
+        clear();
+        entries.forEach(entry -> add(new Entry(entry.filmId, entry.score * factor, entry.year, entry.genreIds)));
+    }
+
+    public int size() {
+        return films.size();
+    }
+
+    /**
+     * Оценка фильма или null, если фильма нет в рейтинге.
+     */
+    public Double score(int filmId) {
+        Entry entry = films.get(filmId);
+        return entry != null ? entry.score : null;
+    }
+
+    /**
+     * Id фильмов с наибольшей оценкой с учетом фильтра. Фильтр применяется до ограничения count.
+     * Обходятся рейтинги выбранных жанров или рейтинги годов диапазона, смотря где меньше фильмов,
+     * и сливаются в общем порядке, так что читается не больше фильмов, чем в меньшей из двух выборок.
+     */
+    public List<Integer> top(Integer count, FilmFilter filter) {
+        int limit = count != null ? count : Integer.MAX_VALUE;
+        List<Integer> ids = new ArrayList<>();
+        Iterator<Entry> entries = merge(sources(filter));
+        Entry previous = null;
+        while (ids.size() < limit && entries.hasNext()) {
+            Entry entry = entries.next();
+            if (entry != previous && filter.matches(entry.year, entry.genreIds)) {
+                ids.add(entry.filmId);
+            }
+            previous = entry;
+        }
+        return ids;
+    }
+
+    private List<NavigableSet<Entry>> sources(FilmFilter filter) {
+        List<NavigableSet<Entry>> genreSets = null;
+        if (filter.hasGenres()) {
+            genreSets = filter.getGenreIds().stream().map(id -> byGenre.getOrDefault(id, emptySet())).toList();
+        }
+        List<NavigableSet<Entry>> yearSets = null;
+        if (filter.hasYears()) {
+            int from = filter.getFromYear() != null ? filter.getFromYear() : Integer.MIN_VALUE;
+            int to = filter.getToYear() != null ? filter.getToYear() : Integer.MAX_VALUE;
+            yearSets = from <= to ? new ArrayList<>(byYear.subMap(from, true, to, true).values()) : List.of();
+        }
+        if (genreSets == null && yearSets == null) {
+            return List.of(global);
+        }
+        if (genreSets == null) {
+            return yearSets;
+        }
+        return yearSets == null || totalSize(genreSets) <= totalSize(yearSets) ? genreSets : yearSets;
+    }
+
+    /**
+     * Слияние рейтингов в общем порядке BY_SCORE. Фильм из нескольких рейтингов идет подряд несколько раз.
+     */
+    private static Iterator<Entry> merge(List<NavigableSet<Entry>> sources) {
+        if (sources.size() == 1) {
+            return sources.get(0).iterator();
+        }
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Math.max(1, sources.size()),
+                (first, second) -> BY_SCORE.compare(first.head, second.head));
+        for (NavigableSet<Entry> source : sources) {
+            Cursor cursor = new Cursor(source.iterator());
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !cursors.isEmpty();
+            }
+
+            @Override
+            public Entry next() {
+                Cursor cursor = cursors.remove();
+                Entry entry = cursor.head;
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+                return entry;
+            }
+        };
+    }
+
+    private static long totalSize(List<NavigableSet<Entry>> sets) {
+        return sets.stream().mapToLong(Set::size).sum();
+    }
+
+    private void add(Entry entry) {
+        films.put(entry.filmId, entry);
+        global.add(entry);
+        byYear.computeIfAbsent(entry.year, year -> new TreeSet<>(BY_SCORE)).add(entry);
+        for (int genreId : entry.genreIds) {
+            byGenre.computeIfAbsent(genreId, id -> new TreeSet<>(BY_SCORE)).add(entry);
+        }
+    }
+
+    private Entry remove(int filmId) {
+        Entry entry = films.remove(filmId);
+        if (entry == null) {
+            return null;
+        }
+        global.remove(entry);
+        removeFrom(byYear, entry.year, entry);
+        for (int genreId : entry.genreIds) {
+            removeFrom(byGenre, genreId, entry);
+        }
+        return entry;
+    }
+
+    private static void removeFrom(Map<Integer, NavigableSet<Entry>> sets, int key, Entry entry) {
+        NavigableSet<Entry> set = sets.get(key);
+        if (set != null) {
+            set.remove(entry);
+            if (set.isEmpty()) {
+                sets.remove(key);
+            }
+        }
+    }
+
+    private static int[] genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return new int[0];
+        }
+        return film.getGenres().stream().mapToInt(Genre::getId).distinct().toArray();
+    }
+
+    private static NavigableSet<Entry> emptySet() {
+        return Collections.emptyNavigableSet();
+    }
+
+    private static final class Cursor {
+        private final Iterator<Entry> entries;
+        private Entry head;
+
+        private Cursor(Iterator<Entry> entries) {
+            this.entries = entries;
+        }
+
+        private boolean advance() {
+            head = entries.hasNext() ? entries.next() : null;
+            return head != null;
+        }
+    }
+
+    private static final class Entry {
+        private final int filmId;
+        private final double score;
+        private final int year;
+        private final int[] genreIds;
+
+        private Entry(int filmId, double score, int year, int[] genreIds) {
+            this.filmId = filmId;
+            this.score = score;
+            this.year = year;
+            this.genreIds = genreIds;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.cache.ReferenceData;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Поисковый индекс фильмов в памяти: триграммы названий фильмов и имен режиссеров (см. {@link TrigramIndex})
+ * и связи режиссер - фильмы. Запрос превращается в id подходящих фильмов без обращения к базе,
+ * догружаются только фильмы запрошенной страницы. Нечеткий поиск ранжирует фильмы по сходству триграмм
+ * с порогом filmorate.search.fuzzy-threshold и ограничен по времени filmorate.search.fuzzy-budget.
+ * Строится из базы при старте и обновляется сервисами фильмов и режиссеров. Фильмы загружаются под блокировкой
+ * записи, поэтому изменения, пришедшие во время построения, применяются после него. Пока индекс не построен,
+ * поиск по подстроке выполняется в базе.
+ * Отключается свойством filmorate.search.in-memory=false, тогда поиск выполняется в базе.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    private static final Set<FilmField> INDEXED_FIELDS = EnumSet.of(FilmField.ID, FilmField.NAME, FilmField.DIRECTORS);
+
+    private final FilmStorage filmStorage;
+    private final ReferenceData referenceData;
+    private final boolean enabled;
+    private final double fuzzyThreshold;
+    private final long fuzzyBudgetNanos;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex directorNames = new TrigramIndex();
+    private final Map<Integer, int[]> directorsByFilm = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> filmsByDirector = new HashMap<>();
+    private volatile boolean ready;
+
+    public FilmSearchIndex(FilmStorage filmStorage, ReferenceData referenceData,
+                           @Value("${filmorate.search.in-memory:true}") boolean enabled,
+                           @Value("${filmorate.search.fuzzy-threshold:0.3}") double fuzzyThreshold,
+                           @Value("${filmorate.search.fuzzy-budget:PT0.05S}") Duration fuzzyBudget) {
+        this.filmStorage = filmStorage;
+        this.referenceData = referenceData;
+        this.enabled = enabled;
+        this.fuzzyThreshold = fuzzyThreshold;
+        this.fuzzyBudgetNanos = fuzzyBudget.toNanos();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * В LIKE символы '%', '_' и '\' - шаблоны и экранирование, такие запросы индекс не обслуживает,
+     * чтобы результат совпадал с поиском в базе. До окончания построения индекс запросы тоже не обслуживает.
+     */
+    public boolean supports(String query) {
+        return enabled && ready && query.chars().noneMatch(c -> c == '%' || c == '_' || c == '\\');
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            titles.clear();
+            directorNames.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+            List<Director> allDirectors = referenceData.findAllDirectors();
+            allDirectors.forEach(director -> directorNames.put(director.getId(), director.getName()));
+            List<Film> allFilms = filmStorage.findAllFilms(INDEXED_FIELDS);
+            allFilms.forEach(this::indexFilm);
+            ready = true;
+            log.info("Поисковый индекс построен: фильмов {}, режиссеров {}", allFilms.size(), allDirectors.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putFilm(Film film) {
+        write(() -> indexFilm(film));
+    }
+
+    public void deleteFilm(int filmId) {
+        write(() -> unindexFilm(filmId));
+    }
+
+    public void putDirector(Director director) {
+        write(() -> directorNames.put(director.getId(), director.getName()));
+    }
+
+    /**
+     * Удаляет режиссера вместе с его связями с фильмами, как каскадное удаление из film_directors.
+     */
+    public void deleteDirector(int directorId) {
+        write(() -> {
+            directorNames.remove(directorId);
+            RoaringBitmap films = filmsByDirector.remove(directorId);
+            if (films != null) {
+                films.forEach((int filmId) -> directorsByFilm.computeIfPresent(filmId, (id, directorIds) -> {
+                    int[] rest = Arrays.stream(directorIds).filter(other -> other != directorId).toArray();
+                    return rest.length > 0 ? rest : null;
+                }));
+            }
+        });
+    }
+
+    /**
+     * Id фильмов, у которых название или имя одного из режиссеров содержит query без учета регистра,
+     * по убыванию id, как в поиске в базе.
+     */
+    public List<Integer> search(String query, boolean byTitle, boolean byDirector) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap found = new RoaringBitmap();
+            if (byTitle) {
+                found.or(titles.findContaining(query));
+            }
+            if (byDirector) {
+                directorNames.findContaining(query).forEach((int directorId) -> {
+                    RoaringBitmap films = filmsByDirector.get(directorId);
+                    if (films != null) {
+                        found.or(films);
+                    }
+                });
+            }
+            List<Integer> ids = new ArrayList<>(found.getCardinality());
+            IntIterator iterator = found.getReverseIntIterator();
+            while (iterator.hasNext()) {
+                ids.add(iterator.next());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Не более limit id фильмов, похожих на query по названию и/или имени режиссера, по убыванию сходства,
+     * при равенстве по убыванию id. Оценка фильма - лучшая из оценок названия и его режиссеров.
+     * Если бюджет времени исчерпан, возвращается лучшее из найденного к этому моменту. Бюджет отсчитывается
+     * после взятия блокировки чтения: ожидание перестроения или записи в него не входит.
+     */
+    public List<Integer> searchFuzzy(String query, boolean byTitle, boolean byDirector, int limit) {
+        lock.readLock().lock();
+        try {
+            long deadline = System.nanoTime() + fuzzyBudgetNanos;
+            Map<Integer, Double> scores = new HashMap<>();
+            if (byTitle) {
+                scores.putAll(titles.findSimilar(query, fuzzyThreshold, deadline));
+            }
+            if (byDirector) {
+                directorNames.findSimilar(query, fuzzyThreshold, deadline).forEach((directorId, score) -> {
+                    RoaringBitmap films = filmsByDirector.get(directorId);
+                    if (films != null) {
+                        films.forEach((int filmId) -> scores.merge(filmId, score, Math::max));
+                    }
+                });
+            }
+            if (System.nanoTime() - deadline > 0) {
+                log.warn("Нечеткий поиск '{}' превысил бюджет времени, результат неполный", query);
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.<Integer, Double>comparingByKey().reversed()))
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void indexFilm(Film film) {
+        unindexFilm(film.getId());
+        titles.put(film.getId(), film.getName());
+        int[] directorIds = film.getDirectors().stream().mapToInt(Director::getId).distinct().toArray();
+        if (directorIds.length > 0) {
+            directorsByFilm.put(film.getId(), directorIds);
+            for (int directorId : directorIds) {
+                filmsByDirector.computeIfAbsent(directorId, id -> new RoaringBitmap()).add(film.getId());
+            }
+        }
+    }
+
+    private void unindexFilm(int filmId) {
+        titles.remove(filmId);
+        int[] directorIds = directorsByFilm.remove(filmId);
+        if (directorIds == null) {
+            return;
+        }
+        for (int directorId : directorIds) {
+            RoaringBitmap films = filmsByDirector.get(directorId);
+            if (films != null) {
+                films.remove(filmId);
+                if (films.isEmpty()) {
+                    filmsByDirector.remove(directorId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Изменения до построения пропускаются: их уже видит загрузка из базы. Готовность проверяется под блокировкой,
+     * которую построение держит до конца загрузки.
+     */
+    private void write(Runnable writer) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (ready) {
+                writer.run();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Индекс лайков в памяти в виде сжатых битовых карт (см. {@link LikeMatrix}).
+ * Общие фильмы считаются пересечением карт, рекомендации - стратегиями пакета recommendation
+ * поверх матрицы, без обращения к базе.
+ * Строится из базы при старте и обновляется сервисами при лайках и удалении фильмов и пользователей.
+ * Отключается свойством filmorate.likes.in-memory=false, тогда рекомендации и общие фильмы считаются в базе.
+ */
+@Slf4j
+@Component
+public class LikeIndex {
+    private final LikeStorage likeStorage;
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private LikeMatrix matrix = new LikeMatrix();
+
+    public LikeIndex(LikeStorage likeStorage,
+                     @Value("${filmorate.likes.in-memory:true}") boolean enabled) {
+        this.likeStorage = likeStorage;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            matrix = new LikeMatrix();
+            likeStorage.forEachLike(matrix::add);
+            matrix.optimize();
+            log.info("Индекс лайков построен: пользователей {}, фильмов {}", matrix.userCount(), matrix.filmCount());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addLike(int filmId, int userId) {
+        write(matrix -> matrix.add(filmId, userId));
+    }
+
+    public void removeLike(int filmId, int userId) {
+        write(matrix -> matrix.remove(filmId, userId));
+    }
+
+    public void deleteFilm(int filmId) {
+        write(matrix -> matrix.deleteFilm(filmId));
+    }
+
+    public void deleteUser(int userId) {
+        write(matrix -> matrix.deleteUser(userId));
+    }
+
+    /**
+     * Выполняет чтение матрицы лайков под блокировкой чтения.
+     * Карты из матрицы нельзя изменять и нельзя использовать после выхода из reader.
+     */
+    public <T> T read(Function<LikeMatrix, T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(matrix);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Id пользователей, у которых есть хотя бы один общий лайк с пользователем, без него самого.
+     */
+    public int[] findNeighbourIds(int userId) {
+        return read(matrix -> {
+            RoaringBitmap neighbours = new RoaringBitmap();
+            matrix.filmsOf(userId).forEach((int filmId) -> neighbours.or(matrix.usersOf(filmId)));
+            neighbours.remove(userId);
+            return neighbours.toArray();
+        });
+    }
+
+    public int[] findUserIdsByFilmId(int filmId) {
+        return read(matrix -> matrix.usersOf(filmId).toArray());
+    }
+
+    /**
+     * Id фильмов, которые лайкнули оба пользователя, по возрастанию.
+     */
+    public List<Integer> findCommonFilmIds(int userId, int friendId) {
+        return read(matrix -> {
+            RoaringBitmap common = RoaringBitmap.and(matrix.filmsOf(userId), matrix.filmsOf(friendId));
+            List<Integer> ids = new ArrayList<>(common.getCardinality());
+            common.forEach((int id) -> ids.add(id));
+            return ids;
+        });
+    }
+
+    private void write(Consumer<LikeMatrix> writer) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            writer.accept(matrix);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Матрица лайков пользователь x фильм: для каждого пользователя битовая карта его фильмов,
+ * для каждого фильма - карта лайкнувших пользователей. Карты лежат в массивах по id.
+ * Не потокобезопасна, синхронизацию обеспечивает владелец (см. {@link LikeIndex}).
+ */
+public class LikeMatrix {
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private RoaringBitmap[] filmsByUser = new RoaringBitmap[0];
+    private RoaringBitmap[] usersByFilm = new RoaringBitmap[0];
+
+    public void add(int filmId, int userId) {
+        if (userId >= filmsByUser.length) {
+            filmsByUser = Arrays.copyOf(filmsByUser, Math.max(userId + 1, filmsByUser.length * 2));
+        }
+        if (filmId >= usersByFilm.length) {
+            usersByFilm = Arrays.copyOf(usersByFilm, Math.max(filmId + 1, usersByFilm.length * 2));
+        }
+        if (filmsByUser[userId] == null) {
+            filmsByUser[userId] = new RoaringBitmap();
+        }
+        if (usersByFilm[filmId] == null) {
+            usersByFilm[filmId] = new RoaringBitmap();
+        }
+        filmsByUser[userId].add(filmId);
+        usersByFilm[filmId].add(userId);
+    }
+
+    public void remove(int filmId, int userId) {
+        remove(filmsByUser, userId, filmId);
+        remove(usersByFilm, filmId, userId);
+    }
+
+    public void deleteFilm(int filmId) {
+        RoaringBitmap users = get(usersByFilm, filmId);
+        if (users != null) {
+            users.forEach((int userId) -> remove(filmsByUser, userId, filmId));
+            usersByFilm[filmId] = null;
+        }
+    }
+
+    public void deleteUser(int userId) {
+        RoaringBitmap films = get(filmsByUser, userId);
+        if (films != null) {
+            films.forEach((int filmId) -> remove(usersByFilm, filmId, userId));
+            filmsByUser[userId] = null;
+        }
+    }
+
+    public void optimize() {
+        Arrays.stream(filmsByUser).filter(Objects::nonNull).forEach(RoaringBitmap::runOptimize);
+        Arrays.stream(usersByFilm).filter(Objects::nonNull).forEach(RoaringBitmap::runOptimize);
+    }
+
+    /**
+     * Фильмы пользователя. Возвращаемую карту нельзя изменять.
+     */
+    public RoaringBitmap filmsOf(int userId) {
+        RoaringBitmap films = get(filmsByUser, userId);
+        return films != null ? films : EMPTY;
+    }
+
+    /**
+     * Пользователи, лайкнувшие фильм. Возвращаемую карту нельзя изменять.
+     */
+    public RoaringBitmap usersOf(int filmId) {
+        RoaringBitmap users = get(usersByFilm, filmId);
+        return users != null ? users : EMPTY;
+    }
+
+    /**
+     * Верхняя граница id пользователей, подходит как размер массивов, индексируемых id пользователя.
+     */
+    public int userCapacity() {
+        return filmsByUser.length;
+    }
+
+    public int filmCapacity() {
+        return usersByFilm.length;
+    }
+
+    public long userCount() {
+        return Arrays.stream(filmsByUser).filter(Objects::nonNull).count();
+    }
+
+    public long filmCount() {
+        return Arrays.stream(usersByFilm).filter(Objects::nonNull).count();
+    }
+
+    /**
+     * Размеры пересечения лайков пользователя с каждым другим пользователем, индекс массива - id соседа.
+     * Считается одним проходом по пользователям лайкнутых фильмов, без пересечения карт на каждого соседа.
+     * Для самого пользователя значение 0.
+     */
+    public int[] countOverlaps(int userId) {
+        int[] overlaps = new int[filmsByUser.length];
+        countOverlaps(filmsOf(userId).toArray(), 0, overlaps.length, overlaps);
+        if (userId < overlaps.length) {
+            overlaps[userId] = 0;
+        }
+        return overlaps;
+    }
+
+    /**
+     * Добавляет в overlaps пересечения с фильмами films только для соседей с id из [fromUser, toUser).
+     * Разные диапазоны пишут в разные ячейки массива, поэтому их можно считать параллельно.
+     */
+    public void countOverlaps(int[] films, int fromUser, int toUser, int[] overlaps) {
+        for (int filmId : films) {
+            PeekableIntIterator users = usersOf(filmId).getIntIterator();
+            users.advanceIfNeeded(fromUser);
+            while (users.hasNext() && users.peekNext() < toUser) {
+                overlaps[users.next()]++;
+            }
+        }
+    }
+
+    /**
+     * Объем работы подсчета пересечений: сумма числа лайков по фильмам пользователя.
+     */
+    public long neighbourhoodSize(int userId) {
+        long size = 0;
+        PeekableIntIterator films = filmsOf(userId).getIntIterator();
+        while (films.hasNext()) {
+            size += usersOf(films.next()).getCardinality();
+        }
+        return size;
+    }
+
+    private static void remove(RoaringBitmap[] bitmaps, int key, int value) {
+        RoaringBitmap bitmap = get(bitmaps, key);
+        if (bitmap != null) {
+            bitmap.remove(value);
+            if (bitmap.isEmpty()) {
+                bitmaps[key] = null;
+            }
+        }
+    }
+
+    private static RoaringBitmap get(RoaringBitmap[] bitmaps, int key) {
+        return key >= 0 && key < bitmaps.length ? bitmaps[key] : null;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Множества id существующих пользователей и фильмов в битовых картах, чтобы проверки существования
+ * в сервисах, в том числе запросы с несуществующими id, не обращались к базе.
+ * Строится из базы при старте и обновляется сервисами при создании и удалении. До окончания построения
+ * и при filmorate.ids.in-memory=false существование проверяется по первичному ключу в базе.
+ * Построение идет под блокировкой записи, поэтому создание и удаление во время построения не теряются.
+ */
+@Slf4j
+@Component
+public class LiveIdIndex {
+    private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RoaringBitmap users = new RoaringBitmap();
+    private final RoaringBitmap films = new RoaringBitmap();
+    private volatile boolean ready;
+
+    public LiveIdIndex(UserStorage userStorage, FilmStorage filmStorage,
+                       @Value("${filmorate.ids.in-memory:true}") boolean enabled) {
+        this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            users.clear();
+            films.clear();
+            userStorage.forEachUserId(users::add);
+            filmStorage.forEachFilmId(films::add);
+            users.runOptimize();
+            films.runOptimize();
+            ready = true;
+            log.info("Индекс id построен: пользователей {}, фильмов {}", users.getCardinality(), films.getCardinality());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean userExists(int id) {
+        return exists(users, id, userStorage::existsById);
+    }
+
+    /**
+     * Существуют ли все пользователи из ids. До построения индекса - один запрос к базе на все id.
+     */
+    public boolean allUsersExist(Collection<Integer> ids) {
+        if (!ready) {
+            return userStorage.existsAll(ids);
+        }
+        lock.readLock().lock();
+        try {
+            return ids.stream().allMatch(users::contains);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean filmExists(int id) {
+        return exists(films, id, filmStorage::existsById);
+    }
+
+    public void addUser(int id) {
+        write(users, id, true);
+    }
+
+    public void removeUser(int id) {
+        write(users, id, false);
+    }
+
+    public void addFilm(int id) {
+        write(films, id, true);
+    }
+
+    public void removeFilm(int id) {
+        write(films, id, false);
+    }
+
+    private boolean exists(RoaringBitmap ids, int id, IntPredicate storage) {
+        if (!ready) {
+            return storage.test(id);
+        }
+        lock.readLock().lock();
+        try {
+            return ids.contains(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(RoaringBitmap ids, int id, boolean present) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (present) {
+                ids.add(id);
+            } else {
+                ids.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
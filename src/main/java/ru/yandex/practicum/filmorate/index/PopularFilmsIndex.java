@@ -0,0 +1,152 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рейтинг популярности фильмов в памяти: общий, по жанрам и по годам выпуска (см. {@link FilmRanking}),
+ * оценка фильма - количество лайков, поэтому топ-N читается без обращения к базе. Строится из базы при старте
+ * и обновляется сервисом фильмов при лайках и изменениях фильмов.
+ * Фильмы загружаются под блокировкой записи, поэтому изменения, пришедшие во время построения, применяются
+ * после него и не теряются. Изменения до построения пропускаются: их уже видит загрузка из базы.
+ * Пока рейтинг не построен, популярные фильмы читаются из базы. Оценки периодически сверяются со счетчиками
+ * лайков в базе (см. {@link #reconcile}).
+ * Отключается свойством filmorate.popular.in-memory=false, тогда популярные фильмы читаются из базы.
+ */
+@Slf4j
+@Component
+public class PopularFilmsIndex {
+    private static final Set<FilmField> INDEXED_FIELDS =
+            EnumSet.of(FilmField.ID, FilmField.RELEASE_DATE, FilmField.GENRES, FilmField.LIKES_COUNT);
+
+    private final FilmStorage filmStorage;
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FilmRanking ranking = new FilmRanking();
+    private volatile boolean ready;
+
+    public PopularFilmsIndex(FilmStorage filmStorage,
+                             @Value("${filmorate.popular.in-memory:true}") boolean enabled) {
+        this.filmStorage = filmStorage;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Включен ли рейтинг и закончено ли его построение.
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            ranking.clear();
+            filmStorage.findAllFilms(INDEXED_FIELDS).forEach(film -> ranking.put(film, (double) film.getLikesCount()));
+            ready = true;
+            log.info("Рейтинг популярности построен для {} фильмов", ranking.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет или обновляет фильм. Если количество лайков у фильма не заполнено, сохраняется текущее.
+     */
+    public void put(Film film) {
+        write(() -> ranking.put(film, film.getLikesCount() != null ? (double) film.getLikesCount() : null));
+    }
+
+    /**
+     * Перечитывает фильмы из базы и заменяет их оценки, например после исправления счетчиков лайков.
+     * Чтение идет под блокировкой записи, чтобы лайк между чтением и заменой не потерялся.
+     */
+    public void refresh(List<Integer> filmIds) {
+        write(() -> filmStorage.findFilmsByIds(filmIds, INDEXED_FIELDS)
+                .forEach(film -> ranking.put(film, (double) film.getLikesCount())));
+    }
+
+    /**
+     * Сверяет оценки рейтинга с films.likes_count и перечитывает разошедшиеся фильмы, возвращает их количество.
+     * Лайк, зафиксированный в базе до построения рейтинга, но примененный сервисом после него, учитывается дважды:
+     * загрузкой и changeLikes. Такие расхождения исправляет периодическая сверка. Лайк, который успел попасть
+     * в базу, но еще не в рейтинг на момент сверки, может снова разойтись, его исправит следующая сверка.
+     */
+    public int reconcile() {
+        if (!isReady()) {
+            return 0;
+        }
+        List<Film> films = filmStorage.findAllFilms(EnumSet.of(FilmField.ID, FilmField.LIKES_COUNT));
+        List<Integer> drifted;
+        lock.readLock().lock();
+        try {
+            drifted = films.stream()
+                    .filter(film -> !Objects.equals(ranking.score(film.getId()), (double) film.getLikesCount()))
+                    .map(Film::getId)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!drifted.isEmpty()) {
+            refresh(drifted);
+        }
+        return drifted.size();
+    }
+
+    public void delete(int filmId) {
+        write(() -> ranking.delete(filmId));
+    }
+
+    public void changeLikes(int filmId, int delta) {
+        write(() -> ranking.changeScore(filmId, delta));
+    }
+
+    /**
+     * Id самых популярных фильмов с учетом фильтра. Фильтр применяется до ограничения count.
+     */
+    public List<Integer> findPopular(Integer count, FilmFilter filter) {
+        lock.readLock().lock();
+        try {
+            return ranking.top(count, filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Готовность проверяется под блокировкой: построение держит ее до конца загрузки.
+     */
+    private void write(Runnable writer) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (ready) {
+                writer.run();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.ReviewStorage;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Полнотекстовый индекс отзывов в памяти: для каждого слова - отзывы, где оно встречается, и число вхождений.
+ * Текст разбивается на слова по всему, что не буква и не цифра, и приводится к нижнему регистру.
+ * Находятся отзывы, содержащие все слова запроса, релевантность считается по BM25.
+ * Рядом хранятся фильм, автор, тип и полезность отзыва, поэтому фильтры и сортировка не обращаются к базе.
+ * Строится из базы при старте и обновляется сервисами отзывов, фильмов и пользователей.
+ */
+@Slf4j
+@Component
+public class ReviewSearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReviewStorage reviewStorage;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Entry> reviews = new HashMap<>();
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+    private long totalLength;
+
+    public ReviewSearchIndex(ReviewStorage reviewStorage) {
+        this.reviewStorage = reviewStorage;
+    }
+
+    public static List<String> tokenize(String text) {
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .toList();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            reviews.clear();
+            postings.clear();
+            totalLength = 0;
+            reviewStorage.forEachReview(this::index);
+            log.info("Индекс отзывов построен: отзывов {}, слов {}", reviews.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(Review review) {
+        write(() -> index(review));
+    }
+
+    public void delete(int reviewId) {
+        write(() -> unindex(reviewId));
+    }
+
+    public void updateUseful(int reviewId, int useful) {
+        write(() -> {
+            Entry entry = reviews.get(reviewId);
+            if (entry != null) {
+                entry.useful = useful;
+            }
+        });
+    }
+
+    /**
+     * Отзывы фильма удаляются из базы каскадно вместе с фильмом.
+     */
+    public void deleteFilm(int filmId) {
+        write(() -> deleteWhere(entry -> entry.filmId == filmId));
+    }
+
+    /**
+     * Отзывы пользователя удаляются из базы каскадно вместе с пользователем.
+     */
+    public void deleteUser(int userId) {
+        write(() -> deleteWhere(entry -> entry.userId == userId));
+    }
+
+    /**
+     * Не более limit id отзывов, содержащих все слова query, с учетом фильтров,
+     * по убыванию релевантности, затем полезности, затем по возрастанию id.
+     */
+    public List<Integer> search(String query, Boolean isPositive, Integer filmId, int limit) {
+        List<String> terms = tokenize(query).stream().distinct().toList();
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            List<Map<Integer, Integer>> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<Integer, Integer> list = postings.get(term);
+                if (list == null) {
+                    return List.of();
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(Map::size));
+
+            double averageLength = (double) totalLength / reviews.size();
+            List<Scored> found = new ArrayList<>();
+            for (int reviewId : lists.get(0).keySet()) {
+                Entry entry = reviews.get(reviewId);
+                if (isPositive != null && entry.isPositive != isPositive || filmId != null && entry.filmId != filmId) {
+                    continue;
+                }
+                double score = 0;
+                for (Map<Integer, Integer> list : lists) {
+                    Integer frequency = list.get(reviewId);
+                    if (frequency == null) {
+                        score = -1;
+                        break;
+                    }
+                    double idf = Math.log(1 + (reviews.size() - list.size() + 0.5) / (list.size() + 0.5));
+                    score += idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * entry.length / averageLength));
+                }
+                if (score >= 0) {
+                    found.add(new Scored(reviewId, score, entry.useful));
+                }
+            }
+            return found.stream()
+                    .sorted(Comparator.comparingDouble(Scored::score).reversed()
+                            .thenComparing(Comparator.comparingInt(Scored::useful).reversed())
+                            .thenComparingInt(Scored::id))
+                    .limit(limit)
+                    .map(Scored::id)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void index(Review review) {
+        unindex(review.getId());
+        List<String> tokens = tokenize(review.getContent());
+        reviews.put(review.getId(), new Entry(review.getFilmId(), review.getUserId(), review.getIsPositive(),
+                review.getUseful() != null ? review.getUseful() : 0, tokens.size(), new HashSet<>(tokens)));
+        totalLength += tokens.size();
+        for (String token : tokens) {
+            postings.computeIfAbsent(token, key -> new HashMap<>()).merge(review.getId(), 1, Integer::sum);
+        }
+    }
+
+    private void unindex(int reviewId) {
+        Entry entry = reviews.remove(reviewId);
+        if (entry == null) {
+            return;
+        }
+        totalLength -= entry.length;
+        for (String term : entry.terms) {
+            Map<Integer, Integer> list = postings.get(term);
+            if (list != null) {
+                list.remove(reviewId);
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private void deleteWhere(Predicate<Entry> condition) {
+        reviews.entrySet().stream()
+                .filter(review -> condition.test(review.getValue()))
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(this::unindex);
+    }
+
+    private void write(Runnable writer) {
+        lock.writeLock().lock();
+        try {
+            writer.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private record Scored(int id, double score, int useful) {
+    }
+
+    private static final class Entry {
+        private final int filmId;
+        private final int userId;
+        private final boolean isPositive;
+        private int useful;
+        private final int length;
+        private final Set<String> terms;
+
+        private Entry(int filmId, int userId, boolean isPositive, int useful, int length, Set<String> terms) {
+            this.filmId = filmId;
+            this.userId = userId;
+            this.isPositive = isPositive;
+            this.useful = useful;
+            this.length = length;
+            this.terms = terms;
+        }
+    }
+}
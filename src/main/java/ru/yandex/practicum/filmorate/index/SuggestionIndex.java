@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.cache.ReferenceData;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.Suggestion;
+import ru.yandex.practicum.filmorate.model.SuggestionKind;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.*;
+
+/**
+ * Индекс подсказок по началу названия фильма или имени режиссера.
+ * Нормализованные имена лежат в отсортированном массиве, подсказки по префиксу - это непрерывный отрезок массива,
+ * его начало находится двоичным поиском. Снимок неизменяемый и подменяется целиком при изменениях (copy-on-write),
+ * поэтому читается без блокировок. Изменения фильмов и режиссеров редки, запись копирует массив за O(n).
+ * Строится из базы при старте и обновляется сервисами фильмов и режиссеров.
+ */
+@Slf4j
+@Component
+public class SuggestionIndex {
+    private static final Set<FilmField> INDEXED_FIELDS = EnumSet.of(FilmField.ID, FilmField.NAME);
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing((Entry entry) -> entry.key)
+            .thenComparing(entry -> entry.kind)
+            .thenComparingInt(entry -> entry.id);
+
+    private final FilmStorage filmStorage;
+    private final ReferenceData referenceData;
+
+    private volatile Entry[] entries = new Entry[0];
+
+    public SuggestionIndex(FilmStorage filmStorage, ReferenceData referenceData) {
+        this.filmStorage = filmStorage;
+        this.referenceData = referenceData;
+    }
+
+    /**
+     * Нижний регистр и одиночные пробелы между словами, без пробелов по краям.
+     */
+    public static String normalize(String text) {
+        return text.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        List<Entry> all = new ArrayList<>();
+        filmStorage.findAllFilms(INDEXED_FIELDS)
+                .forEach(film -> all.add(new Entry(film.getId(), film.getName(), SuggestionKind.FILM)));
+        referenceData.findAllDirectors()
+                .forEach(director -> all.add(new Entry(director.getId(), director.getName(), SuggestionKind.DIRECTOR)));
+        all.sort(ORDER);
+        entries = all.toArray(new Entry[0]);
+        log.info("Индекс подсказок построен: {} имен", entries.length);
+    }
+
+    public void putFilm(Film film) {
+        put(new Entry(film.getId(), film.getName(), SuggestionKind.FILM));
+    }
+
+    /**
+     * Добавляет пакет фильмов одной заменой снимка, а не копированием массива на каждый фильм.
+     * Новые имена дописываются в конец и сортируются вместе с уже отсортированным массивом:
+     * сортировка слиянием находит готовый отрезок, поэтому стоимость близка к O(n + k log k).
+     */
+    public synchronized void putFilms(Collection<Film> films) {
+        Set<Integer> ids = new HashSet<>();
+        films.forEach(film -> ids.add(film.getId()));
+        List<Entry> all = new ArrayList<>(entries.length + films.size());
+        for (Entry entry : entries) {
+            if (entry.kind != SuggestionKind.FILM || !ids.contains(entry.id)) {
+                all.add(entry);
+            }
+        }
+        films.forEach(film -> all.add(new Entry(film.getId(), film.getName(), SuggestionKind.FILM)));
+        all.sort(ORDER);
+        entries = all.toArray(new Entry[0]);
+    }
+
+    public void deleteFilm(int filmId) {
+        delete(filmId, SuggestionKind.FILM);
+    }
+
+    public void putDirector(Director director) {
+        put(new Entry(director.getId(), director.getName(), SuggestionKind.DIRECTOR));
+    }
+
+    public void deleteDirector(int directorId) {
+        delete(directorId, SuggestionKind.DIRECTOR);
+    }
+
+    /**
+     * Не более limit фильмов и режиссеров, чье нормализованное имя начинается с prefix, в алфавитном порядке.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        Entry[] snapshot = entries;
+        String key = normalize(prefix);
+        List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, 16));
+        for (int i = lowerBound(snapshot, key); i < snapshot.length && suggestions.size() < limit; i++) {
+            Entry entry = snapshot[i];
+            if (!entry.key.startsWith(key)) {
+                break;
+            }
+            suggestions.add(new Suggestion(entry.id, entry.name, entry.kind));
+        }
+        return suggestions;
+    }
+
+    private synchronized void put(Entry entry) {
+        Entry[] current = without(entries, entry.id, entry.kind);
+        int position = Arrays.binarySearch(current, entry, ORDER);
+        int insertAt = position >= 0 ? position : -position - 1;
+        Entry[] updated = new Entry[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, insertAt);
+        updated[insertAt] = entry;
+        System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+        entries = updated;
+    }
+
+    private synchronized void delete(int id, SuggestionKind kind) {
+        entries = without(entries, id, kind);
+    }
+
+    private static Entry[] without(Entry[] current, int id, SuggestionKind kind) {
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].id == id && current[i].kind == kind) {
+                Entry[] updated = new Entry[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                return updated;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Индекс первого элемента с ключом не меньше key.
+     */
+    private static int lowerBound(Entry[] snapshot, String key) {
+        int low = 0;
+        int high = snapshot.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (snapshot[middle].key.compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static final class Entry {
+        private final int id;
+        private final String name;
+        private final String key;
+        private final SuggestionKind kind;
+
+        private Entry(int id, String name, SuggestionKind kind) {
+            this.id = id;
+            this.name = name;
+            this.key = normalize(name);
+            this.kind = kind;
+        }
+    }
+}
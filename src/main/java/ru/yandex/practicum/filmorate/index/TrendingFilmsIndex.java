@@ -0,0 +1,186 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FeedOperationType;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рейтинг трендовых фильмов в памяти: лайк весит тем меньше, чем он старше, вес падает вдвое
+ * за период filmorate.trending.half-life.
+ * Оценка фильма хранится как сумма весов 2^((t - origin) / halfLife) его лайков относительно общей точки отсчета origin.
+ * Со временем все оценки убывают в одно и то же число раз, поэтому порядок в рейтинге меняется только
+ * при лайках и пересчитывать оценки по часам не нужно. Когда вес нового лайка становится слишком большим,
+ * точка отсчета сдвигается и все оценки масштабируются.
+ * Строится при старте по событиям LIKE из ленты и обновляется сервисами при лайках и изменениях фильмов.
+ * Открытые лайки хранятся по паре пользователь-фильм вместе со временем лайка, поэтому лайк, который уже попал
+ * в рейтинг из ленты при построении, сервис повторно не добавит, а снятие лайка вычитает ровно его вес.
+ * Пока рейтинг не построен, тренды читаются из базы. Рейтинг периодически перестраивается по ленте
+ * с интервалом filmorate.trending.rebuild-interval.
+ */
+@Slf4j
+@Component
+public class TrendingFilmsIndex {
+    private static final Set<FilmField> INDEXED_FIELDS = EnumSet.of(FilmField.ID, FilmField.RELEASE_DATE, FilmField.GENRES);
+    private static final double MAX_EXPONENT = 256;
+
+    private final FilmStorage filmStorage;
+    private final FeedStorage feedStorage;
+    private final double halfLifeMillis;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FilmRanking ranking = new FilmRanking();
+    private final Map<Long, Long> openLikes = new HashMap<>();
+    private long origin = System.currentTimeMillis();
+    private volatile boolean ready;
+
+    public TrendingFilmsIndex(FilmStorage filmStorage, FeedStorage feedStorage,
+                              @Value("${filmorate.trending.half-life:P7D}") Duration halfLife) {
+        if (halfLife.isNegative() || halfLife.isZero()) {
+            throw new IllegalStateException("Период полураспада filmorate.trending.half-life должен быть положительным");
+        }
+        this.filmStorage = filmStorage;
+        this.feedStorage = feedStorage;
+        this.halfLifeMillis = halfLife.toMillis();
+    }
+
+    /**
+     * Закончено ли построение рейтинга.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Duration getHalfLife() {
+        return Duration.ofMillis((long) halfLifeMillis);
+    }
+
+    /**
+     * Повторяет события LIKE ленты по порядку. Лента пишет ADD и REMOVE и для повторных и для несуществующих лайков,
+     * поэтому открытые лайки отслеживаются по паре пользователь-фильм: повторный ADD и REMOVE без лайка пропускаются.
+     * События удаленных фильмов пропускает сам рейтинг, события удаленных пользователей удаляются из ленты каскадно.
+     * Фильмы и лента читаются под блокировкой записи, поэтому фильм, созданный во время построения,
+     * добавляется после него, а не теряется вместе со своими лайками. Повторное построение по расписанию
+     * исправляет расхождения рейтинга с лентой, пока оно идет, тренды читаются из базы.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${filmorate.trending.rebuild-interval:PT1H}",
+            initialDelayString = "${filmorate.trending.rebuild-interval:PT1H}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            ranking.clear();
+            openLikes.clear();
+            origin = System.currentTimeMillis();
+            filmStorage.findAllFilms(INDEXED_FIELDS).forEach(film -> ranking.put(film, 0.0));
+
+            feedStorage.forEachLikeEvent(event -> {
+                if (event.getOperation() == FeedOperationType.ADD) {
+                    applyLike(event.getEntityId(), event.getUserId(), event.getTimestamp());
+                } else if (event.getOperation() == FeedOperationType.REMOVE) {
+                    applyUnlike(event.getEntityId(), event.getUserId());
+                }
+            });
+            ready = true;
+            log.info("Рейтинг трендов построен для {} фильмов по {} лайкам из ленты", ranking.size(), openLikes.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет или обновляет фильм, оценка существующего фильма сохраняется.
+     */
+    public void put(Film film) {
+        write(() -> ranking.put(film, null));
+    }
+
+    public void delete(int filmId) {
+        write(() -> ranking.delete(filmId));
+    }
+
+    /**
+     * Добавляет лайк пользователя, поставленный в момент likedAt. Уже учтенный лайк пропускается.
+     */
+    public void addLike(int filmId, int userId, Instant likedAt) {
+        write(() -> applyLike(filmId, userId, likedAt.toEpochMilli()));
+    }
+
+    /**
+     * Снимает вклад лайка пользователя. Неучтенный лайк пропускается.
+     */
+    public void removeLike(int filmId, int userId) {
+        write(() -> applyUnlike(filmId, userId));
+    }
+
+    /**
+     * Id фильмов с наибольшей затухающей оценкой с учетом фильтра. Фильтр применяется до ограничения count.
+     */
+    public List<Integer> findTrending(Integer count, FilmFilter filter) {
+        lock.readLock().lock();
+        try {
+            return ranking.top(count, filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void applyLike(int filmId, int userId, long likedAt) {
+        if (openLikes.putIfAbsent(likeKey(filmId, userId), likedAt) == null) {
+            ranking.changeScore(filmId, weight(likedAt));
+        }
+    }
+
+    private void applyUnlike(int filmId, int userId) {
+        Long likedAt = openLikes.remove(likeKey(filmId, userId));
+        if (likedAt != null) {
+            ranking.changeScore(filmId, -weight(likedAt));
+        }
+    }
+
+    private static long likeKey(int filmId, int userId) {
+        return ((long) userId << 32) | filmId;
+    }
+
+    /**
+     * Вес лайка относительно origin. Вызывается под блокировкой записи.
+     */
+    private double weight(long likedAt) {
+        double exponent = (likedAt - origin) / halfLifeMillis;
+        if (exponent > MAX_EXPONENT) {
+            ranking.scaleScores(Math.pow(2, -exponent));
+            origin = likedAt;
+            exponent = 0;
+        }
+        return Math.pow(2, exponent);
+    }
+
+    /**
+     * Изменения до построения пропускаются: их увидит построение по ленте.
+     */
+    private void write(Runnable writer) {
+        lock.writeLock().lock();
+        try {
+            if (ready) {
+                writer.run();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+
+/**
+ * Инвертированный индекс триграмм: для каждой тройки символов - битовая карта id строк, в которых она встречается.
+ * Строки и запросы приводятся к верхнему регистру, как UPPER(x) LIKE UPPER('%q%') в базе.
+ * Поиск подстроки пересекает карты всех триграмм запроса и проверяет кандидатов вхождением подстроки,
+ * запросы короче трех символов проверяются перебором строк.
+ * Нечеткий поиск ранжирует строки по доле общих триграмм, как similarity в pg_trgm.
+ * Не потокобезопасен, синхронизацию обеспечивает владелец (см. {@link FilmSearchIndex}).
+ */
+public class TrigramIndex {
+    private static final int N = 3;
+
+    private static final int DEADLINE_CHECK_INTERVAL = 4096;
+
+    private final Map<Integer, String> texts = new HashMap<>();
+    private final Map<Integer, Integer> trigramCounts = new HashMap<>();
+    private final Map<Long, RoaringBitmap> postings = new HashMap<>();
+
+    public static String normalize(String text) {
+        return text.toUpperCase(Locale.ROOT);
+    }
+
+    public void put(int id, String text) {
+        remove(id);
+        String normalized = normalize(text);
+        Set<Long> trigrams = trigrams(normalized);
+        texts.put(id, normalized);
+        trigramCounts.put(id, trigrams.size());
+        for (long trigram : trigrams) {
+            postings.computeIfAbsent(trigram, key -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    public void remove(int id) {
+        String previous = texts.remove(id);
+        if (previous == null) {
+            return;
+        }
+        trigramCounts.remove(id);
+        for (long trigram : trigrams(previous)) {
+            RoaringBitmap ids = postings.get(trigram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        texts.clear();
+        trigramCounts.clear();
+        postings.clear();
+    }
+
+    public int size() {
+        return texts.size();
+    }
+
+    /**
+     * Id строк, содержащих query без учета регистра.
+     */
+    public RoaringBitmap findContaining(String query) {
+        String normalized = normalize(query);
+        RoaringBitmap result = new RoaringBitmap();
+        if (normalized.length() < N) {
+            texts.forEach((id, text) -> {
+                if (text.contains(normalized)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+
+        List<RoaringBitmap> lists = new ArrayList<>();
+        for (long trigram : trigrams(normalized)) {
+            RoaringBitmap ids = postings.get(trigram);
+            if (ids == null) {
+                return result;
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+        RoaringBitmap candidates = lists.get(0).clone();
+        for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+            candidates.and(lists.get(i));
+        }
+        candidates.forEach((int id) -> {
+            if (texts.get(id).contains(normalized)) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Сходство строк с query: общие триграммы / (триграммы запроса + триграммы строки - общие).
+     * Возвращаются строки со сходством не ниже threshold. Общие триграммы считаются одним проходом
+     * по картам триграмм запроса. Если наступил момент deadline (System.nanoTime), подсчет прерывается
+     * и оценки считаются по уже пройденным картам; в проходе оценок срок тоже проверяется, и тогда
+     * возвращаются уже оцененные строки.
+     * Для запросов короче трех символов сходство 1 у строк, содержащих запрос.
+     */
+    public Map<Integer, Double> findSimilar(String query, double threshold, long deadline) {
+        String normalized = normalize(query);
+        Set<Long> queryTrigrams = trigrams(normalized);
+        Map<Integer, Double> scores = new HashMap<>();
+        if (queryTrigrams.isEmpty()) {
+            findContaining(normalized).forEach((int id) -> scores.put(id, 1.0));
+            return scores;
+        }
+
+        Map<Integer, Integer> shared = new HashMap<>();
+        int visited = 0;
+        search:
+        for (long trigram : queryTrigrams) {
+            RoaringBitmap ids = postings.get(trigram);
+            if (ids == null) {
+                continue;
+            }
+            for (PeekableIntIterator iterator = ids.getIntIterator(); iterator.hasNext(); ) {
+                shared.merge(iterator.next(), 1, Integer::sum);
+                if (++visited % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                    break search;
+                }
+            }
+            if (System.nanoTime() - deadline > 0) {
+                break;
+            }
+        }
+        for (Map.Entry<Integer, Integer> entry : shared.entrySet()) {
+            int common = entry.getValue();
+            double similarity = (double) common / (queryTrigrams.size() + trigramCounts.get(entry.getKey()) - common);
+            if (similarity >= threshold) {
+                scores.put(entry.getKey(), similarity);
+            }
+            if (++visited % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Различные триграммы строки, каждая упакована в long по 16 бит на символ.
+     */
+    static Set<Long> trigrams(String text) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + N <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CacheStats {
+    private long size;
+    private long maximumSize;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRate;
+}
@@ -1,6 +1,8 @@
 package ru.yandex.practicum.filmorate.model;
 
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -15,7 +17,10 @@ import java.util.Set;
 
 @Data
 @Builder
+@JsonFilter(Film.FIELDS_FILTER)
 public class Film {
+    public static final String FIELDS_FILTER = "filmFields";
+
     private Integer id;
     @NotBlank(message = "Введите название фильма.")
     private String name;
@@ -28,6 +33,8 @@ public class Film {
     @Positive(message = "Продолжительность фильма должна быть больше 0.")
     private Integer duration;
     private final Set<Integer> likes = new HashSet<>();
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer likesCount;
     private Mpa mpa;
     private LinkedHashSet<Genre> genres;
     private final Set<Director> directors = new HashSet<>();
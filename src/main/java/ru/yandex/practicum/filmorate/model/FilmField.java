@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Поля фильма, которые можно запросить через параметр fields.
+ * Лайки, жанры, режиссеры и количество лайков загружаются только если они запрошены.
+ */
+public enum FilmField {
+    ID("id"),
+    NAME("name"),
+    DESCRIPTION("description"),
+    RELEASE_DATE("releaseDate"),
+    DURATION("duration"),
+    MPA("mpa"),
+    GENRES("genres"),
+    DIRECTORS("directors"),
+    LIKES("likes"),
+    LIKES_COUNT("likesCount");
+
+    public static final Set<FilmField> ALL = Collections.unmodifiableSet(EnumSet.allOf(FilmField.class));
+    public static final Set<FilmField> ID_ONLY = Collections.unmodifiableSet(EnumSet.of(ID));
+
+    private final String property;
+
+    FilmField(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public static FilmField fromProperty(String property) {
+        for (FilmField field : values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Неизвестное поле фильма: %s", property));
+    }
+}
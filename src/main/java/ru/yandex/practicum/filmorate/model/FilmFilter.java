@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Set;
+
+/**
+ * Фильтр рейтингов фильмов по жанрам и годам выпуска.
+ * При нескольких жанрах подходит фильм хотя бы с одним из них, границы годов включаются.
+ * Пустой набор жанров и незаданные границы годов выборку не ограничивают.
+ */
+@Data
+@AllArgsConstructor
+public class FilmFilter {
+    public static final FilmFilter NONE = new FilmFilter(Set.of(), null, null);
+
+    private final Set<Integer> genreIds;
+    private final Integer fromYear;
+    private final Integer toYear;
+
+    public boolean hasGenres() {
+        return !genreIds.isEmpty();
+    }
+
+    public boolean hasYears() {
+        return fromYear != null || toYear != null;
+    }
+
+    public boolean matches(int year, int[] filmGenreIds) {
+        if (fromYear != null && year < fromYear || toYear != null && year > toYear) {
+            return false;
+        }
+        if (!hasGenres()) {
+            return true;
+        }
+        for (int genreId : filmGenreIds) {
+            if (genreIds.contains(genreId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
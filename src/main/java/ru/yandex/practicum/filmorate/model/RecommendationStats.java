@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RecommendationStats {
+    private boolean precompute;
+    private int cachedUsers;
+    private int pendingUsers;
+    private long runs;
+    private long recomputedUsers;
+    private long onDemandComputations;
+    private int lastRunUsers;
+    private long lastRunMillis;
+    private long maxRunMillis;
+}
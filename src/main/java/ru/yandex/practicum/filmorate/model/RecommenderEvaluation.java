@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RecommenderEvaluation {
+    private String algorithm;
+    private int k;
+    private int users;
+    private double precisionAtK;
+    private double recallAtK;
+    private double meanLatencyMicros;
+    private long p95LatencyMicros;
+    private long maxLatencyMicros;
+}
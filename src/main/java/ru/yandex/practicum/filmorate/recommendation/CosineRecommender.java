@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Соседи по косинусной мере бинарных векторов лайков: |A ∩ B| / sqrt(|A| * |B|).
+ */
+@Component
+public class CosineRecommender extends NeighbourRecommender {
+    public CosineRecommender(OverlapCounter overlapCounter,
+                             @Value("${filmorate.recommendations.neighbours:50}") int neighbours) {
+        super(overlapCounter, neighbours);
+    }
+
+    @Override
+    public String getName() {
+        return "cosine";
+    }
+
+    @Override
+    protected double similarity(int overlap, int userLikes, int neighbourLikes) {
+        return overlap / Math.sqrt((double) userLikes * neighbourLikes);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+
+import java.util.List;
+
+/**
+ * Item-based рекомендации: оценка фильма - сумма косинусных сходств с фильмами, которые лайкнул пользователь.
+ * Сходство фильмов f и g - число пользователей, лайкнувших оба, деленное на sqrt(|U(f)| * |U(g)|).
+ * Совместные лайки накапливаются обходом пользователей каждого лайкнутого фильма, матрица целиком не строится.
+ */
+@Component
+public class ItemBasedRecommender implements Recommender {
+    @Override
+    public String getName() {
+        return "item-based";
+    }
+
+    @Override
+    public List<FilmScore> recommend(LikeMatrix likes, int userId, int limit) {
+        RoaringBitmap userFilms = likes.filmsOf(userId);
+        if (userFilms.isEmpty()) {
+            return List.of();
+        }
+
+        double[] scores = new double[likes.filmCapacity()];
+        int[] filmLikes = new int[likes.filmCapacity()];
+        RoaringBitmap candidates = new RoaringBitmap();
+        userFilms.forEach((int likedFilmId) -> {
+            RoaringBitmap likedFilmUsers = likes.usersOf(likedFilmId);
+            double likedFilmNorm = Math.sqrt(likedFilmUsers.getCardinality());
+            likedFilmUsers.forEach((int neighbour) -> {
+                if (neighbour == userId) {
+                    return;
+                }
+                likes.filmsOf(neighbour).forEach((int filmId) -> {
+                    if (userFilms.contains(filmId)) {
+                        return;
+                    }
+                    if (filmLikes[filmId] == 0) {
+                        filmLikes[filmId] = likes.usersOf(filmId).getCardinality();
+                        candidates.add(filmId);
+                    }
+                    scores[filmId] += 1 / (likedFilmNorm * Math.sqrt(filmLikes[filmId]));
+                });
+            });
+        });
+
+        TopScores top = new TopScores(limit);
+        candidates.forEach((int filmId) -> top.offer(filmId, scores[filmId]));
+        return top.toFilmScores();
+    }
+}
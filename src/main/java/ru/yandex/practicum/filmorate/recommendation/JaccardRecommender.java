@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Соседи по коэффициенту Жаккара: |A ∩ B| / |A ∪ B|.
+ */
+@Component
+public class JaccardRecommender extends NeighbourRecommender {
+    public JaccardRecommender(OverlapCounter overlapCounter,
+                              @Value("${filmorate.recommendations.neighbours:50}") int neighbours) {
+        super(overlapCounter, neighbours);
+    }
+
+    @Override
+    public String getName() {
+        return "jaccard";
+    }
+
+    @Override
+    protected double similarity(int overlap, int userLikes, int neighbourLikes) {
+        return (double) overlap / (userLikes + neighbourLikes - overlap);
+    }
+}
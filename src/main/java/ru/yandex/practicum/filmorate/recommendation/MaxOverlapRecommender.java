@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+
+import java.util.List;
+
+/**
+ * Исходный алгоритм: берутся все соседи с максимальным пересечением лайков,
+ * рекомендуются все их фильмы, которые пользователь еще не лайкнул.
+ * Оценка у всех фильмов одна - размер максимального пересечения, поэтому порядок по возрастанию id.
+ */
+@Component
+public class MaxOverlapRecommender implements Recommender {
+    public static final String NAME = "max-overlap";
+
+    private final OverlapCounter overlapCounter;
+
+    public MaxOverlapRecommender(OverlapCounter overlapCounter) {
+        this.overlapCounter = overlapCounter;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<FilmScore> recommend(LikeMatrix likes, int userId, int limit) {
+        int[] overlaps = overlapCounter.countOverlaps(likes, userId);
+        int maxOverlap = 0;
+        for (int overlap : overlaps) {
+            maxOverlap = Math.max(maxOverlap, overlap);
+        }
+        if (maxOverlap == 0) {
+            return List.of();
+        }
+
+        RoaringBitmap candidates = new RoaringBitmap();
+        for (int neighbour = 0; neighbour < overlaps.length; neighbour++) {
+            if (overlaps[neighbour] == maxOverlap) {
+                candidates.or(likes.filmsOf(neighbour));
+            }
+        }
+        candidates.andNot(likes.filmsOf(userId));
+
+        TopScores top = new TopScores(limit);
+        double score = maxOverlap;
+        candidates.forEach((int filmId) -> top.offer(filmId, score));
+        return top.toFilmScores();
+    }
+}
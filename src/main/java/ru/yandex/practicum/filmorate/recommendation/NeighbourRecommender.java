@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import org.roaringbitmap.RoaringBitmap;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+
+import java.util.List;
+
+/**
+ * User-based рекомендации по k ближайшим соседям: соседи ранжируются по мере сходства множеств лайков,
+ * оценка фильма - сумма сходств соседей из top-k, которые его лайкнули.
+ */
+public abstract class NeighbourRecommender implements Recommender {
+    private final OverlapCounter overlapCounter;
+    private final int neighbours;
+
+    protected NeighbourRecommender(OverlapCounter overlapCounter, int neighbours) {
+        this.overlapCounter = overlapCounter;
+        this.neighbours = neighbours;
+    }
+
+    /**
+     * Сходство пользователей по размеру пересечения и размерам их множеств лайков.
+     */
+    protected abstract double similarity(int overlap, int userLikes, int neighbourLikes);
+
+    @Override
+    public List<FilmScore> recommend(LikeMatrix likes, int userId, int limit) {
+        RoaringBitmap userFilms = likes.filmsOf(userId);
+        if (userFilms.isEmpty()) {
+            return List.of();
+        }
+        int userLikes = userFilms.getCardinality();
+        int[] overlaps = overlapCounter.countOverlaps(likes, userId);
+
+        TopScores nearest = new TopScores(neighbours);
+        for (int neighbour = 0; neighbour < overlaps.length; neighbour++) {
+            if (overlaps[neighbour] > 0) {
+                int neighbourLikes = likes.filmsOf(neighbour).getCardinality();
+                nearest.offer(neighbour, similarity(overlaps[neighbour], userLikes, neighbourLikes));
+            }
+        }
+
+        double[] scores = new double[likes.filmCapacity()];
+        RoaringBitmap candidates = new RoaringBitmap();
+        for (TopScores.Scored neighbour : nearest.toList()) {
+            likes.filmsOf(neighbour.id()).forEach((int filmId) -> {
+                if (!userFilms.contains(filmId)) {
+                    scores[filmId] += neighbour.score();
+                    candidates.add(filmId);
+                }
+            });
+        }
+
+        TopScores top = new TopScores(limit);
+        candidates.forEach((int filmId) -> top.offer(filmId, scores[filmId]));
+        return top.toFilmScores();
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Подсчет пересечений лайков пользователя со всеми соседями.
+ * Для больших соседств (сумма лайков по фильмам пользователя не меньше filmorate.recommendations.parallel-threshold)
+ * подсчет делится по диапазонам id соседей и выполняется в отдельном ForkJoinPool;
+ * диапазоны не пересекаются, поэтому задачи пишут в общий массив без синхронизации.
+ * Меньшие соседства и пул из одного потока считаются последовательно в вызывающем потоке.
+ */
+@Component
+public class OverlapCounter {
+    private final int parallelism;
+    private final long parallelThreshold;
+    private final ForkJoinPool pool;
+
+    public OverlapCounter(@Value("${filmorate.recommendations.parallelism:0}") int parallelism,
+                          @Value("${filmorate.recommendations.parallel-threshold:200000}") long parallelThreshold) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.parallelThreshold = parallelThreshold;
+        this.pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+    }
+
+    /**
+     * Последовательный подсчет, для тестов и офлайн-оценки.
+     */
+    public static OverlapCounter sequential() {
+        return new OverlapCounter(1, Long.MAX_VALUE);
+    }
+
+    /**
+     * Размеры пересечения лайков пользователя с каждым другим пользователем, индекс массива - id соседа.
+     * Для самого пользователя значение 0.
+     */
+    public int[] countOverlaps(LikeMatrix likes, int userId) {
+        if (pool == null || likes.neighbourhoodSize(userId) < parallelThreshold) {
+            return likes.countOverlaps(userId);
+        }
+
+        int[] films = likes.filmsOf(userId).toArray();
+        int[] overlaps = new int[likes.userCapacity()];
+        int minRange = Math.max(1, overlaps.length / parallelism);
+        pool.invoke(new CountTask(likes, films, overlaps, 0, overlaps.length, minRange));
+        if (userId < overlaps.length) {
+            overlaps[userId] = 0;
+        }
+        return overlaps;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private static final class CountTask extends RecursiveAction {
+        private final LikeMatrix likes;
+        private final int[] films;
+        private final int[] overlaps;
+        private final int fromUser;
+        private final int toUser;
+        private final int minRange;
+
+        private CountTask(LikeMatrix likes, int[] films, int[] overlaps, int fromUser, int toUser, int minRange) {
+            this.likes = likes;
+            this.films = films;
+            this.overlaps = overlaps;
+            this.fromUser = fromUser;
+            this.toUser = toUser;
+            this.minRange = minRange;
+        }
+
+        @Override
+        protected void compute() {
+            if (toUser - fromUser <= minRange) {
+                likes.countOverlaps(films, fromUser, toUser, overlaps);
+                return;
+            }
+            int middle = (fromUser + toUser) >>> 1;
+            invokeAll(new CountTask(likes, films, overlaps, fromUser, middle, minRange),
+                    new CountTask(likes, films, overlaps, middle, toUser, minRange));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+
+import java.util.List;
+
+/**
+ * Стратегия рекомендаций фильмов по матрице лайков.
+ */
+public interface Recommender {
+    /**
+     * Имя стратегии, по нему она выбирается в параметре algorithm и в настройках.
+     */
+    String getName();
+
+    /**
+     * Не более limit фильмов, которые пользователь еще не лайкнул,
+     * по убыванию оценки, при равной оценке по возрастанию id.
+     */
+    List<FilmScore> recommend(LikeMatrix likes, int userId, int limit);
+}
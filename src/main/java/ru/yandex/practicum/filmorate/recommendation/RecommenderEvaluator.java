@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+import ru.yandex.practicum.filmorate.model.RecommenderEvaluation;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Офлайн-оценка стратегий рекомендаций на таблице likes.
+ * Лайки детерминированно (по seed) делятся на обучающие и отложенные в доле holdout.
+ * Для каждого пользователя, у которого есть и те и другие, стратегия по обучающим лайкам
+ * рекомендует k фильмов; попадания в отложенные лайки дают precision@k и recall@k.
+ * Время каждого запроса к стратегии измеряется отдельно.
+ * Оценка загружает всю таблицу лайков и опрашивает каждую стратегию для каждого пользователя, поэтому
+ * это инструмент выбора алгоритма, а не рабочий запрос: включается свойством
+ * filmorate.recommendations.evaluation.enabled=true и выполняется в отдельном потоке, не больше одной за раз.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.recommendations.evaluation.enabled", havingValue = "true")
+public class RecommenderEvaluator {
+    public static final int MAX_K = 100;
+
+    private final LikeStorage likeStorage;
+    private final List<Recommender> recommenders;
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(), Thread.ofPlatform().name("recommender-evaluation").daemon().factory());
+
+    public RecommenderEvaluator(LikeStorage likeStorage, List<Recommender> recommenders) {
+        this.likeStorage = likeStorage;
+        this.recommenders = recommenders;
+    }
+
+    /**
+     * Проверяет параметры и запускает оценку в отдельном потоке. Если оценка уже выполняется,
+     * бросает RejectedExecutionException.
+     */
+    public CompletableFuture<List<RecommenderEvaluation>> evaluateAsync(int k, double holdout, long seed) {
+        validate(k, holdout);
+        try {
+            return CompletableFuture.supplyAsync(() -> evaluate(k, holdout, seed), executor);
+        } catch (RejectedExecutionException e) {
+            throw new RejectedExecutionException("Оценка рекомендаций уже выполняется, повторите запрос позже");
+        }
+    }
+
+    public List<RecommenderEvaluation> evaluate(int k, double holdout, long seed) {
+        validate(k, holdout);
+        LikeMatrix train = new LikeMatrix();
+        LikeMatrix test = new LikeMatrix();
+        likeStorage.forEachLike((filmId, userId) -> {
+            boolean heldOut = new SplittableRandom(seed ^ ((long) userId << 32 | filmId)).nextDouble() < holdout;
+            (heldOut ? test : train).add(filmId, userId);
+        });
+        int[] users = IntStream.range(0, test.userCapacity())
+                .filter(userId -> !test.filmsOf(userId).isEmpty() && !train.filmsOf(userId).isEmpty())
+                .toArray();
+
+        return recommenders.stream()
+                .map(recommender -> evaluate(recommender, train, test, users, k))
+                .toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static void validate(int k, double holdout) {
+        if (k < 1 || k > MAX_K) {
+            throw new ValidationException(String.format("Значение k должно быть от 1 до %d, передано k=%d", MAX_K, k));
+        }
+        if (!(holdout > 0 && holdout < 1)) {
+            throw new ValidationException(String.format("Доля отложенных лайков должна быть в интервале (0, 1), передано %s", holdout));
+        }
+    }
+
+    private RecommenderEvaluation evaluate(Recommender recommender, LikeMatrix train, LikeMatrix test, int[] users, int k) {
+        long[] latencies = new long[users.length];
+        double precision = 0;
+        double recall = 0;
+        for (int i = 0; i < users.length; i++) {
+            int userId = users[i];
+            long started = System.nanoTime();
+            List<FilmScore> recommended = recommender.recommend(train, userId, k);
+            latencies[i] = System.nanoTime() - started;
+
+            RoaringBitmap heldOut = test.filmsOf(userId);
+            long hits = recommended.stream().filter(score -> heldOut.contains(score.getFilmId())).count();
+            precision += (double) hits / k;
+            recall += (double) hits / heldOut.getCardinality();
+        }
+
+        Arrays.sort(latencies);
+        RecommenderEvaluation evaluation = RecommenderEvaluation.builder()
+                .algorithm(recommender.getName())
+                .k(k)
+                .users(users.length)
+                .precisionAtK(users.length == 0 ? 0 : precision / users.length)
+                .recallAtK(users.length == 0 ? 0 : recall / users.length)
+                .meanLatencyMicros(users.length == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(Arrays.stream(latencies).sum()) / (double) users.length)
+                .p95LatencyMicros(users.length == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(latencies[(int) Math.ceil(users.length * 0.95) - 1]))
+                .maxLatencyMicros(users.length == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(latencies[users.length - 1]))
+                .build();
+        log.info("Оценка рекомендаций: {}", evaluation);
+        return evaluation;
+    }
+}
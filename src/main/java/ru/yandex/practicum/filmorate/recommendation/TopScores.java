@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import ru.yandex.practicum.filmorate.model.FilmScore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Отбор limit лучших id по оценке: куча размера limit, в вершине худший из отобранных.
+ */
+final class TopScores {
+    private static final Comparator<Scored> BEST_FIRST = Comparator
+            .comparingDouble(Scored::score).reversed()
+            .thenComparingInt(Scored::id);
+
+    private final int limit;
+    private final PriorityQueue<Scored> heap = new PriorityQueue<>(BEST_FIRST.reversed());
+
+    TopScores(int limit) {
+        this.limit = limit;
+    }
+
+    void offer(int id, double score) {
+        if (heap.size() < limit) {
+            heap.add(new Scored(id, score));
+            return;
+        }
+        Scored worst = heap.peek();
+        if (score > worst.score() || score == worst.score() && id < worst.id()) {
+            heap.poll();
+            heap.add(new Scored(id, score));
+        }
+    }
+
+    List<Scored> toList() {
+        List<Scored> sorted = new ArrayList<>(heap);
+        sorted.sort(BEST_FIRST);
+        return sorted;
+    }
+
+    List<FilmScore> toFilmScores() {
+        return toList().stream()
+                .map(scored -> new FilmScore(scored.id(), scored.score()))
+                .toList();
+    }
+
+    record Scored(int id, double score) {
+    }
+}
@@ -2,8 +2,14 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.cache.ReferenceData;
 import ru.yandex.practicum.filmorate.exception.DataNotFoundException;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.SuggestionIndex;
 import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 import ru.yandex.practicum.filmorate.storage.*;
 
 import java.util.List;
@@ -12,28 +18,57 @@ import java.util.List;
 @Service
 public class DirectorService {
     private final DirectorStorage directorStorage;
+    private final FilmStorage filmStorage;
+    private final FilmCache filmCache;
+    private final ReferenceData referenceData;
+    private final FilmSearchIndex filmSearchIndex;
+    private final SuggestionIndex suggestionIndex;
 
     public List<Director> findAllDirectors() {
-        return directorStorage.findAllDirectors();
+        return referenceData.findAllDirectors();
     }
 
     public Director create(Director director) {
-        return directorStorage.create(director);
+        Director created = directorStorage.create(director);
+        referenceData.putDirector(created);
+        filmSearchIndex.putDirector(created);
+        suggestionIndex.putDirector(created);
+        return created;
     }
 
     public Director update(Director director) {
-        if (directorStorage.findDirectorById(director.getId()).isEmpty()) {
+        if (referenceData.findDirectorById(director.getId()).isEmpty()) {
             throw new DataNotFoundException(String.format("Не найден режиссер с id=%d", director.getId()));
         }
-        return directorStorage.update(director);
+        Director updated = directorStorage.update(director);
+        referenceData.putDirector(updated);
+        filmSearchIndex.putDirector(updated);
+        suggestionIndex.putDirector(updated);
+        invalidateFilms(director.getId());
+        return updated;
     }
 
     public Director findDirectorById(int id) {
-        return directorStorage.findDirectorById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден режиссер с id=%d", id)));
+        return referenceData.findDirectorById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден режиссер с id=%d", id)));
     }
 
     public void removeDirectorById(int id) {
-        directorStorage.findDirectorById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден режиссер с id=%d", id)));
+        referenceData.findDirectorById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден режиссер с id=%d", id)));
+        List<Integer> filmIds = findFilmIds(id);
         directorStorage.removeDirectorById(id);
+        referenceData.removeDirector(id);
+        filmSearchIndex.deleteDirector(id);
+        suggestionIndex.deleteDirector(id);
+        filmCache.invalidateAll(filmIds);
+    }
+
+    private void invalidateFilms(int directorId) {
+        filmCache.invalidateAll(findFilmIds(directorId));
+    }
+
+    private List<Integer> findFilmIds(int directorId) {
+        return filmStorage.findFilmsByDirectorID(directorId, "", null, 0, FilmField.ID_ONLY).stream()
+                .map(Film::getId)
+                .toList();
     }
 }
\ No newline at end of file
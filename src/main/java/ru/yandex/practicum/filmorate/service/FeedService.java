@@ -3,9 +3,9 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.DataNotFoundException;
+import ru.yandex.practicum.filmorate.index.LiveIdIndex;
 import ru.yandex.practicum.filmorate.model.FeedEntry;
 import ru.yandex.practicum.filmorate.storage.FeedStorage;
-import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.time.Instant;
 import java.util.List;
@@ -14,7 +14,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class FeedService {
     public final FeedStorage feedStorage;
-    public final UserStorage userStorage;
+    public final LiveIdIndex liveIdIndex;
 
     public FeedEntry create(FeedEntry feedEntry) {
         feedEntry.setTimestamp(Instant.now().toEpochMilli());
@@ -22,7 +22,9 @@ public class FeedService {
     }
 
     public List<FeedEntry> getUserFeed(int userId) {
-        userStorage.findUserById(userId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", userId)));
+        if (!liveIdIndex.userExists(userId)) {
+            throw new DataNotFoundException(String.format("Не найден пользователь с id=%d", userId));
+        }
         return feedStorage.getUserFeed(userId);
     }
 }
@@ -1,54 +1,140 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.cache.ReferenceData;
 import ru.yandex.practicum.filmorate.exception.*;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.LiveIdIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.index.ReviewSearchIndex;
+import ru.yandex.practicum.filmorate.index.SuggestionIndex;
+import ru.yandex.practicum.filmorate.index.TrendingFilmsIndex;
 import ru.yandex.practicum.filmorate.model.*;
 import ru.yandex.practicum.filmorate.storage.*;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @RequiredArgsConstructor
 @Service
 public class FilmService {
+    private static final int DEFAULT_FUZZY_LIMIT = 10;
+
     private final FilmStorage filmStorage;
-    private final MpaStorage mpaStorage;
-    private final GenreStorage genreStorage;
     private final LikeStorage likeStorage;
-    private final UserStorage userStorage;
     private final FeedService feedService;
-    private final DirectorStorage directorStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final TrendingFilmsIndex trendingFilmsIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final SuggestionIndex suggestionIndex;
+    private final ReviewSearchIndex reviewSearchIndex;
+    private final LikeIndex likeIndex;
+    private final LiveIdIndex liveIdIndex;
+    private final RecommendationService recommendationService;
+    private final FilmCache filmCache;
+    private final ReferenceData referenceData;
+
+    @Value("${filmorate.films.batch-size:1000}")
+    private int batchSize;
 
-    public List<Film> findAllFilms() {
-        return filmStorage.findAllFilms();
+    public List<Film> findAllFilms(Set<FilmField> fields) {
+        return filmStorage.findAllFilms(resolve(fields));
     }
 
-    public Film create(Film film) {
-        Optional<Mpa> mpa = mpaStorage.findMpaById(film.getMpa().getId());
-        if (mpa.isEmpty()) {
-            throw new ValidationException(String.format("Не найден рейтинг mpa с id=%d", film.getMpa().getId()));
+    /**
+     * Страница каталога по курсору: фильмы с id больше after в порядке возрастания id.
+     * Запрашивается на один фильм больше, чтобы понять, есть ли следующая страница.
+     */
+    public FilmPage findFilmsPage(Integer after, int limit, Set<FilmField> fields) {
+        if (limit < 1) {
+            throw new ValidationException(String.format("Размер страницы должен быть больше 0, передано limit=%d", limit));
         }
-
-        if (film.getGenres() != null) {
-            film.getGenres().forEach(genre -> genreStorage.findGenreById(genre.getId()).orElseThrow(() -> new ValidationException(String.format("Не найден жанр с id=%d", genre.getId()))));
+        List<Film> films = filmStorage.findFilmsPage(after == null ? 0 : after, limit + 1, resolve(fields));
+        if (films.size() <= limit) {
+            return new FilmPage(films, null);
         }
+        List<Film> page = films.subList(0, limit);
+        return new FilmPage(page, page.get(limit - 1).getId());
+    }
 
-        return filmStorage.create(film);
+    public void exportAllFilms(Consumer<List<Film>> batchConsumer) {
+        filmStorage.exportAllFilms(batchConsumer);
+    }
+
+    public Film create(Film film) {
+        validateReferences(film);
+        Film created = filmStorage.create(film);
+        liveIdIndex.addFilm(created.getId());
+        popularFilmsIndex.put(created);
+        trendingFilmsIndex.put(created);
+        filmSearchIndex.putFilm(created);
+        suggestionIndex.putFilm(created);
+        return created;
+    }
+
+    /**
+     * Пакетное создание фильмов из потока. Фильмы читаются частями по filmorate.films.batch-size: ссылки фильмов
+     * части проверяются по справочникам, часть пишется в своей транзакции и после ее фиксации попадает в индексы.
+     * В памяти одновременно не больше одной части. Ошибка в фильме отклоняет его часть целиком, части до нее
+     * уже записаны и не откатываются: {@link BatchValidationException} содержит их id и индекс фильма с ошибкой.
+     * Возвращает id созданных фильмов в порядке пакета.
+     */
+    public List<Integer> createAll(Iterator<Film> films) {
+        List<Integer> ids = new ArrayList<>();
+        List<Film> chunk = new ArrayList<>();
+        try {
+            while (films.hasNext()) {
+                Film film = films.next();
+                try {
+                    validateReferences(film);
+                } catch (ValidationException e) {
+                    throw new ValidationException(String.format("Фильм с индексом %d: %s", ids.size() + chunk.size(), e.getMessage()));
+                }
+                chunk.add(film);
+                if (chunk.size() == batchSize) {
+                    createChunk(chunk, ids);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                createChunk(chunk, ids);
+            }
+        } catch (ValidationException e) {
+            throw new BatchValidationException(e.getMessage(), ids, ids.size() + chunk.size());
+        }
+        return ids;
     }
 
     public Film update(Film film) {
-        filmStorage.findFilmById(film.getId()).orElseThrow(() -> new DataNotFoundException(String.format("Не найден фильм с id=%d", film.getId())));
-        return filmStorage.update(film);
+        checkFilmExists(film.getId());
+        validateReferences(film);
+        Film updated = filmStorage.update(film);
+        filmCache.invalidate(updated.getId());
+        popularFilmsIndex.put(updated);
+        trendingFilmsIndex.put(updated);
+        filmSearchIndex.putFilm(updated);
+        suggestionIndex.putFilm(updated);
+        return updated;
     }
 
+    /**
+     * Фильм читается из кэша целиком, набор полей fields применяется при сериализации.
+     */
     public Film findFilmById(int id) {
-        return filmStorage.findFilmById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден фильм с id=%d", id)));
+        return filmCache.findFilmById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден фильм с id=%d", id)));
     }
 
     public void addLike(int filmId, int userId) {
-        userStorage.findUserById(userId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", userId)));
-        filmStorage.findFilmById(filmId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден фильм с id=%d", filmId)));
+        checkUserExists(userId);
+        checkFilmExists(filmId);
 
         FeedEntry feedEntry = FeedEntry.builder()
                 .userId(userId)
@@ -57,13 +143,26 @@ public class FilmService {
                 .entityId(filmId)
                 .build();
         feedService.create(feedEntry);
-        likeStorage.addLike(filmId, userId);
+        Instant likedAt = Instant.ofEpochMilli(feedEntry.getTimestamp());
+        if (likeStorage.addLike(filmId, userId, likedAt)) {
+            filmCache.invalidate(filmId);
+            popularFilmsIndex.changeLikes(filmId, 1);
+            trendingFilmsIndex.addLike(filmId, userId, likedAt);
+            likeIndex.addLike(filmId, userId);
+            recommendationService.likeChanged(filmId, userId);
+        }
     }
 
     public void removeLike(int filmId, int userId) {
-        userStorage.findUserById(userId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", userId)));
-        filmStorage.findFilmById(filmId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден фильм с id=%d", filmId)));
-        likeStorage.removeLike(filmId, userId);
+        checkUserExists(userId);
+        checkFilmExists(filmId);
+        if (likeStorage.removeLike(filmId, userId)) {
+            filmCache.invalidate(filmId);
+            popularFilmsIndex.changeLikes(filmId, -1);
+            trendingFilmsIndex.removeLike(filmId, userId);
+            likeIndex.removeLike(filmId, userId);
+            recommendationService.likeChanged(filmId, userId);
+        }
 
         FeedEntry feedEntry = FeedEntry.builder()
                 .userId(userId)
@@ -74,55 +173,241 @@ public class FilmService {
         feedService.create(feedEntry);
     }
 
-    public List<Film> findPopular(Integer count, Integer genreId, Integer year) {
-        return filmStorage.findPopular(count, genreId, year);
+    public List<Film> findPopular(Integer count, List<Integer> genreIds, Integer year, Integer fromYear, Integer toYear,
+                                  Set<FilmField> fields) {
+        FilmFilter filter = filter(genreIds, year, fromYear, toYear);
+        if (popularFilmsIndex.isReady()) {
+            return filmStorage.findFilmsByIds(popularFilmsIndex.findPopular(count, filter), resolve(fields));
+        }
+        return filmStorage.findPopular(count, filter, resolve(fields));
     }
 
-    public List<Film> findFilmsByDirectorID(int id, String sortedBy) {
-        directorStorage.findDirectorById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден директор с id=%d", id)));
-        return filmStorage.findFilmsByDirectorID(id, sortedBy);
+    /**
+     * Фильмы по убыванию оценки, в которой каждый лайк затухает со временем (см. {@link TrendingFilmsIndex}).
+     */
+    public List<Film> findTrending(Integer count, List<Integer> genreIds, Integer year, Integer fromYear, Integer toYear,
+                                   Set<FilmField> fields) {
+        FilmFilter filter = filter(genreIds, year, fromYear, toYear);
+        if (trendingFilmsIndex.isReady()) {
+            return filmStorage.findFilmsByIds(trendingFilmsIndex.findTrending(count, filter), resolve(fields));
+        }
+        return filmStorage.findTrending(count, filter, trendingFilmsIndex.getHalfLife(), resolve(fields));
+    }
+
+    /**
+     * Фильмы, которые чаще всего лайкают вместе с фильмом id, по убыванию числа совместных лайков.
+     */
+    public List<Film> findSimilarFilms(int id, int limit, Set<FilmField> fields) {
+        checkFilmExists(id);
+        if (limit < 1) {
+            throw new ValidationException(String.format("Количество фильмов должно быть больше 0, передано limit=%d", limit));
+        }
+        return filmStorage.findFilmsByIds(likeStorage.findSimilarFilmIds(id, limit), resolve(fields));
+    }
+
+    /**
+     * Фильмы режиссера, отсортированные по году или лайкам, страница задается limit и offset.
+     */
+    public List<Film> findFilmsByDirectorID(int id, String sortedBy, Integer limit, int offset, Set<FilmField> fields) {
+        referenceData.findDirectorById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден директор с id=%d", id)));
+        if (limit != null && limit < 1) {
+            throw new ValidationException(String.format("Размер страницы должен быть больше 0, передано limit=%d", limit));
+        }
+        if (offset < 0) {
+            throw new ValidationException(String.format("Смещение не может быть отрицательным, передано offset=%d", offset));
+        }
+        return filmStorage.findFilmsByDirectorID(id, sortedBy, limit, offset, resolve(fields));
     }
 
     public List<Mpa> findAllMpa() {
-        return mpaStorage.findAllMpa();
+        return referenceData.findAllMpa();
     }
 
     public Mpa findMpaById(int id) {
-        return mpaStorage.findMpaById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден рейтинг MPA с id=%d", id)));
+        return referenceData.findMpaById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден рейтинг MPA с id=%d", id)));
     }
 
     public List<Genre> findAllGenres() {
-        return genreStorage.findAllGenres();
+        return referenceData.findAllGenres();
     }
 
     public Genre findGenreById(int id) {
-        return genreStorage.findGenreById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден жанр с id=%d", id)));
+        return referenceData.findGenreById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден жанр с id=%d", id)));
     }
 
     public void deleteFilmById(int id) {
-        filmStorage.findFilmById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден фильм с id=%d", id)));
+        checkFilmExists(id);
         filmStorage.deleteFilmById(id);
+        liveIdIndex.removeFilm(id);
+        filmCache.invalidate(id);
+        popularFilmsIndex.delete(id);
+        trendingFilmsIndex.delete(id);
+        filmSearchIndex.deleteFilm(id);
+        suggestionIndex.deleteFilm(id);
+        reviewSearchIndex.deleteFilm(id);
+        likeIndex.deleteFilm(id);
+        recommendationService.markAllDirty();
+    }
+
+    public List<Film> findRecommendedFilms(int userId, String algorithm, Integer limit) {
+        checkUserExists(userId);
+        return filmStorage.findFilmsByIds(recommendationService.findRecommendedFilmIds(userId, algorithm, limit), FilmField.ALL);
     }
 
-    public List<Film> findRecommendedFilms(int userId) {
-        userStorage.findUserById(userId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", userId)));
-        return filmStorage.findRecommendedFilms(userId);
+    public List<Film> findCommonFilms(int userId, int friendId, Set<FilmField> fields) {
+        checkUsersExist(userId, friendId);
+
+        if (likeIndex.isEnabled()) {
+            return filmStorage.findFilmsByIds(likeIndex.findCommonFilmIds(userId, friendId), resolve(fields));
+        }
+        return filmStorage.findCommonFilms(userId, friendId, resolve(fields));
     }
 
-    public List<Film> findCommonFilms(int userId, int friendId) {
-        userStorage.findUserById(userId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", userId)));
-        userStorage.findUserById(friendId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден друг с id=%d", friendId)));
+    /**
+     * Поиск по подстроке в названии и/или имени режиссера, по убыванию id.
+     * Без limit возвращаются все фильмы после курсора after, курсор - id последнего фильма предыдущей страницы.
+     * Id находятся поисковым индексом, догружаются только фильмы страницы. Запросы с символами шаблонов LIKE
+     * и поиск при выключенном индексе выполняются в базе.
+     */
+    public FilmPage searchFilm(String query, List<String> by, Integer after, Integer limit, Set<FilmField> fields) {
+        if (limit != null && limit < 1) {
+            throw new ValidationException(String.format("Размер страницы должен быть больше 0, передано limit=%d", limit));
+        }
+        boolean byTitle = !(by.size() == 1 && by.contains("director"));
+        boolean byDirector = !(by.size() == 1 && by.contains("title"));
+        int size = limit == null ? Integer.MAX_VALUE : limit;
 
-        return filmStorage.findCommonFilms(userId, friendId);
+        List<Film> films;
+        if (filmSearchIndex.supports(query)) {
+            List<Integer> ids = filmSearchIndex.search(query, byTitle, byDirector).stream()
+                    .filter(id -> after == null || id < after)
+                    .limit(size + 1L)
+                    .toList();
+            films = filmStorage.findFilmsByIds(ids, resolve(fields));
+        } else {
+            films = searchInStorage(query, byTitle, byDirector, resolve(fields)).stream()
+                    .filter(film -> after == null || film.getId() < after)
+                    .limit(size + 1L)
+                    .toList();
+        }
+        if (films.size() <= size) {
+            return new FilmPage(films, null);
+        }
+        List<Film> page = films.subList(0, size);
+        return new FilmPage(page, page.get(size - 1).getId());
     }
 
-    public List<Film> searchFilm(String query, List<String> by) {
-        if (by.size() == 1 && by.contains("title")) {
-            return filmStorage.searchFilmsByName(query);
+    /**
+     * Подсказки для строки поиска: фильмы и режиссеры, чье имя начинается с prefix.
+     */
+    public List<Suggestion> findSuggestions(String prefix, int limit) {
+        if (limit < 1) {
+            throw new ValidationException(String.format("Количество подсказок должно быть больше 0, передано limit=%d", limit));
         }
-        if (by.size() == 1 && by.contains("director")) {
-            return filmStorage.searchFilmsByDir(query);
+        return suggestionIndex.suggest(prefix, limit);
+    }
+
+    /**
+     * Нечеткий поиск: не более limit фильмов по убыванию сходства триграмм с query, без курсора.
+     */
+    public List<Film> searchFilmFuzzy(String query, List<String> by, Integer after, Integer limit, Set<FilmField> fields) {
+        if (!filmSearchIndex.isEnabled()) {
+            throw new ValidationException("Нечеткий поиск недоступен: поисковый индекс выключен");
         }
-        return filmStorage.searchFilmsByDirAndName(query);
+        if (after != null) {
+            throw new ValidationException("Нечеткий поиск не поддерживает курсор after");
+        }
+        if (limit != null && limit < 1) {
+            throw new ValidationException(String.format("Размер страницы должен быть больше 0, передано limit=%d", limit));
+        }
+        boolean byTitle = !(by.size() == 1 && by.contains("director"));
+        boolean byDirector = !(by.size() == 1 && by.contains("title"));
+        List<Integer> ids = filmSearchIndex.searchFuzzy(query, byTitle, byDirector, limit == null ? DEFAULT_FUZZY_LIMIT : limit);
+        return filmStorage.findFilmsByIds(ids, resolve(fields));
+    }
+
+    private List<Film> searchInStorage(String query, boolean byTitle, boolean byDirector, Set<FilmField> fields) {
+        if (!byDirector) {
+            return filmStorage.searchFilmsByName(query, fields);
+        }
+        if (!byTitle) {
+            return filmStorage.searchFilmsByDir(query, fields);
+        }
+        return filmStorage.searchFilmsByDirAndName(query, fields);
+    }
+
+    private void createChunk(List<Film> chunk, List<Integer> ids) {
+        List<Film> created = filmStorage.createAll(chunk);
+        for (Film film : created) {
+            liveIdIndex.addFilm(film.getId());
+            popularFilmsIndex.put(film);
+            trendingFilmsIndex.put(film);
+            filmSearchIndex.putFilm(film);
+            ids.add(film.getId());
+        }
+        suggestionIndex.putFilms(created);
+        chunk.clear();
+    }
+
+    /**
+     * Проверка рейтинга, жанров и режиссеров фильма по справочникам в памяти, без запросов к базе.
+     */
+    private void validateReferences(Film film) {
+        if (film.getMpa() == null) {
+            throw new ValidationException("Не указан рейтинг mpa");
+        }
+        if (referenceData.findMpaById(film.getMpa().getId()).isEmpty()) {
+            throw new ValidationException(String.format("Не найден рейтинг mpa с id=%d", film.getMpa().getId()));
+        }
+        if (film.getGenres() != null) {
+            film.getGenres().forEach(genre -> referenceData.findGenreById(genre.getId()).orElseThrow(() -> new ValidationException(String.format("Не найден жанр с id=%d", genre.getId()))));
+        }
+        if (film.getDirectors() != null) {
+            film.getDirectors().forEach(director -> referenceData.findDirectorById(director.getId()).orElseThrow(() -> new ValidationException(String.format("Не найден режиссер с id=%d", director.getId()))));
+        }
+    }
+
+    private void checkFilmExists(int id) {
+        if (!liveIdIndex.filmExists(id)) {
+            throw new DataNotFoundException(String.format("Не найден фильм с id=%d", id));
+        }
+    }
+
+    private void checkUserExists(int id) {
+        if (!liveIdIndex.userExists(id)) {
+            throw new DataNotFoundException(String.format("Не найден пользователь с id=%d", id));
+        }
+    }
+
+    /**
+     * Оба пользователя проверяются одним обращением, по отдельности - только чтобы указать отсутствующего.
+     */
+    private void checkUsersExist(int userId, int friendId) {
+        if (!liveIdIndex.allUsersExist(List.of(userId, friendId))) {
+            checkUserExists(userId);
+            throw new DataNotFoundException(String.format("Не найден друг с id=%d", friendId));
+        }
+    }
+
+    /**
+     * Фильтр рейтингов из параметров запроса: year - сокращение для диапазона из одного года.
+     */
+    private FilmFilter filter(List<Integer> genreIds, Integer year, Integer fromYear, Integer toYear) {
+        if (year != null) {
+            if (fromYear != null || toYear != null) {
+                throw new ValidationException("Нельзя одновременно передавать year и диапазон fromYear, toYear");
+            }
+            fromYear = year;
+            toYear = year;
+        }
+        if (fromYear != null && toYear != null && fromYear > toYear) {
+            throw new ValidationException(String.format("Пустой диапазон годов: fromYear=%d больше toYear=%d", fromYear, toYear));
+        }
+        Set<Integer> genres = genreIds == null ? Set.of() : new HashSet<>(genreIds);
+        return new FilmFilter(genres, fromYear, toYear);
+    }
+
+    private Set<FilmField> resolve(Set<FilmField> fields) {
+        return fields == null || fields.isEmpty() ? FilmField.ALL : fields;
     }
 }
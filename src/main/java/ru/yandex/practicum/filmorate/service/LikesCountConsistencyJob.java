@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+
+import java.util.List;
+
+/**
+ * Поддерживает films.likes_count в согласованном с таблицей likes состоянии:
+ * при старте заполняет счетчики, затем периодически исправляет расхождения. Исправленные фильмы
+ * перечитываются в рейтинг популярности и удаляются из кэша фильмов, которые хранят тот же счетчик.
+ * Затем рейтинг популярности сверяется со счетчиками целиком.
+ * Совместные лайки film_co_likes сверяются с likes при старте и при каждой проверке и пересчитываются при расхождении.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikesCountConsistencyJob {
+    private final LikeStorage likeStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final FilmCache filmCache;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void backfill() {
+        List<Integer> repaired = likeStorage.repairLikesCount();
+        log.info("Заполнены счетчики лайков для {} фильмов", repaired.size());
+        repairCoLikes();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes-count.repair-interval:PT1H}",
+            initialDelayString = "${filmorate.likes-count.repair-interval:PT1H}")
+    public void repair() {
+        List<Integer> repaired = likeStorage.repairLikesCount();
+        if (!repaired.isEmpty()) {
+            log.warn("Исправлены расхождения счетчика лайков для {} фильмов", repaired.size());
+            filmCache.invalidateAll(repaired);
+            popularFilmsIndex.refresh(repaired);
+        }
+        int drifted = popularFilmsIndex.reconcile();
+        if (drifted > 0) {
+            log.warn("Исправлены оценки рейтинга популярности для {} фильмов", drifted);
+        }
+        repairCoLikes();
+    }
+
+    private void repairCoLikes() {
+        int pairs = likeStorage.backfillCoLikes();
+        if (pairs > 0) {
+            log.info("Пересчитаны совместные лайки для {} пар фильмов", pairs);
+        }
+    }
+}
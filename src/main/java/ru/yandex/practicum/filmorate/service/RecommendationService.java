@@ -0,0 +1,239 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+import ru.yandex.practicum.filmorate.model.RecommendationStats;
+import ru.yandex.practicum.filmorate.recommendation.MaxOverlapRecommender;
+import ru.yandex.practicum.filmorate.recommendation.Recommender;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Рекомендации пользователей. Стратегия по умолчанию задается свойством filmorate.recommendations.algorithm,
+ * другие можно выбрать параметром запроса, они считаются на каждый запрос.
+ * Рекомендации стратегии по умолчанию считаются при первом запросе и дальше хранятся в кэше Caffeine,
+ * ограниченном filmorate.recommendations.cache.maximum-size пользователями; рекомендации, которые не запрашивались
+ * дольше filmorate.recommendations.cache.expire-after-access, вытесняются и больше не пересчитываются.
+ * Расчет идет вне кэша: одновременные первые запросы одного пользователя могут посчитать рекомендации дважды,
+ * но не блокируют запросы других пользователей.
+ * Изменение лайков помечает устаревшими рекомендации самого пользователя, его соседей по лайкам
+ * и пользователей, лайкнувших фильм; фоновая задача пересчитывает их на ограниченном пуле потоков.
+ * Пока идет пересчет, отдается предыдущий результат. Для item-based стратегии такая пометка приблизительная:
+ * лайк меняет популярность фильма, которая входит в оценки и у пользователей вне соседства.
+ * Отключается свойством filmorate.recommendations.precompute=false, тогда рекомендации считаются на каждый запрос.
+ */
+@Slf4j
+@Service
+public class RecommendationService {
+    private final FilmStorage filmStorage;
+    private final LikeIndex likeIndex;
+    private final boolean precompute;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Recommender> recommenders = new LinkedHashMap<>();
+    private final Recommender defaultRecommender;
+
+    private final Cache<Integer, List<Integer>> recommendations;
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicLong likesVersion = new AtomicLong();
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong recomputedUsers = new AtomicLong();
+    private final AtomicLong onDemandComputations = new AtomicLong();
+    private volatile int lastRunUsers;
+    private volatile long lastRunMillis;
+    private volatile long maxRunMillis;
+
+    public RecommendationService(FilmStorage filmStorage,
+                                 LikeIndex likeIndex,
+                                 List<Recommender> recommenders,
+                                 @Value("${filmorate.recommendations.algorithm:" + MaxOverlapRecommender.NAME + "}") String algorithm,
+                                 @Value("${filmorate.recommendations.precompute:true}") boolean precompute,
+                                 @Value("${filmorate.recommendations.threads:2}") int threads,
+                                 @Value("${filmorate.recommendations.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${filmorate.recommendations.cache.maximum-size:10000}") long cacheMaximumSize,
+                                 @Value("${filmorate.recommendations.cache.expire-after-access:PT1H}") Duration cacheExpireAfterAccess) {
+        this.filmStorage = filmStorage;
+        this.likeIndex = likeIndex;
+        this.precompute = precompute;
+        recommenders.forEach(recommender -> this.recommenders.put(recommender.getName(), recommender));
+        this.defaultRecommender = this.recommenders.get(algorithm);
+        if (defaultRecommender == null) {
+            throw new IllegalStateException(String.format("Неизвестный алгоритм рекомендаций %s, доступны %s", algorithm, this.recommenders.keySet()));
+        }
+        if (!likeIndex.isEnabled() && !MaxOverlapRecommender.NAME.equals(algorithm)) {
+            throw new IllegalStateException(String.format("Алгоритм рекомендаций %s требует индекса лайков в памяти", algorithm));
+        }
+        this.recommendations = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterAccess(cacheExpireAfterAccess)
+                .build();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Id рекомендованных фильмов пользователя по убыванию оценки, не более limit.
+     * Без algorithm используется стратегия по умолчанию, без limit возвращаются все рекомендации.
+     */
+    public List<Integer> findRecommendedFilmIds(int userId, String algorithm, Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new ValidationException(String.format("Количество рекомендаций должно быть больше 0, передано limit=%d", limit));
+        }
+        int max = limit != null ? limit : Integer.MAX_VALUE;
+        if (algorithm != null && !algorithm.equals(defaultRecommender.getName())) {
+            Recommender recommender = recommenders.get(algorithm);
+            if (recommender == null) {
+                throw new ValidationException(String.format("Неизвестный алгоритм рекомендаций %s, доступны %s", algorithm, recommenders.keySet()));
+            }
+            if (!likeIndex.isEnabled()) {
+                throw new ValidationException(String.format("Алгоритм рекомендаций %s требует индекса лайков в памяти", algorithm));
+            }
+            return recommend(recommender, userId, max);
+        }
+        List<Integer> filmIds = findRecommendedFilmIds(userId);
+        return filmIds.size() > max ? filmIds.subList(0, max) : filmIds;
+    }
+
+    private List<Integer> findRecommendedFilmIds(int userId) {
+        if (!precompute) {
+            return compute(userId);
+        }
+        List<Integer> cached = recommendations.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long version = likesVersion.get();
+        onDemandComputations.incrementAndGet();
+        List<Integer> filmIds = compute(userId);
+        List<Integer> previous = recommendations.asMap().putIfAbsent(userId, filmIds);
+        if (likesVersion.get() != version) {
+            // лайки менялись во время расчета, результат мог не попасть под пометку устаревших
+            dirty.add(userId);
+        }
+        return previous != null ? previous : filmIds;
+    }
+
+    /**
+     * Помечает устаревшими рекомендации, на которые влияет лайк пользователя userId фильму filmId.
+     * Вызывается после изменения лайка.
+     */
+    public void likeChanged(int filmId, int userId) {
+        if (!precompute) {
+            return;
+        }
+        likesVersion.incrementAndGet();
+        if (!likeIndex.isEnabled()) {
+            markAllDirty();
+            return;
+        }
+        markDirty(userId);
+        Arrays.stream(likeIndex.findNeighbourIds(userId)).forEach(this::markDirty);
+        Arrays.stream(likeIndex.findUserIdsByFilmId(filmId)).forEach(this::markDirty);
+    }
+
+    /**
+     * Удаление фильма или пользователя меняет пересечения у многих пользователей сразу,
+     * поэтому устаревшими помечаются все рекомендации.
+     */
+    public void markAllDirty() {
+        likesVersion.incrementAndGet();
+        dirty.addAll(recommendations.asMap().keySet());
+    }
+
+    public void userDeleted(int userId) {
+        recommendations.invalidate(userId);
+        markAllDirty();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.refresh-interval:PT5S}",
+            initialDelayString = "${filmorate.recommendations.refresh-interval:PT5S}")
+    public void refresh() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Iterator<Integer> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            int userId = iterator.next();
+            iterator.remove();
+            tasks.add(() -> {
+                if (recommendations.asMap().containsKey(userId)) {
+                    List<Integer> filmIds = compute(userId);
+                    recommendations.asMap().computeIfPresent(userId, (id, previous) -> filmIds);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            log.error("Ошибка пересчета рекомендаций", e.getCause());
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        runs.incrementAndGet();
+        recomputedUsers.addAndGet(tasks.size());
+        lastRunUsers = tasks.size();
+        lastRunMillis = millis;
+        maxRunMillis = Math.max(maxRunMillis, millis);
+        log.info("Пересчитаны рекомендации для {} пользователей за {} мс", tasks.size(), millis);
+    }
+
+    public RecommendationStats stats() {
+        return RecommendationStats.builder()
+                .precompute(precompute)
+                .cachedUsers((int) recommendations.estimatedSize())
+                .pendingUsers(dirty.size())
+                .runs(runs.get())
+                .recomputedUsers(recomputedUsers.get())
+                .onDemandComputations(onDemandComputations.get())
+                .lastRunUsers(lastRunUsers)
+                .lastRunMillis(lastRunMillis)
+                .maxRunMillis(maxRunMillis)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void markDirty(int userId) {
+        if (recommendations.asMap().containsKey(userId)) {
+            dirty.add(userId);
+        }
+    }
+
+    private List<Integer> compute(int userId) {
+        if (likeIndex.isEnabled()) {
+            return recommend(defaultRecommender, userId, Integer.MAX_VALUE);
+        }
+        return filmStorage.findRecommendedFilms(userId).stream()
+                .map(Film::getId)
+                .toList();
+    }
+
+    private List<Integer> recommend(Recommender recommender, int userId, int limit) {
+        return likeIndex.read(likes -> recommender.recommend(likes, userId, limit)).stream()
+                .map(FilmScore::getFilmId)
+                .toList();
+    }
+}
@@ -3,13 +3,14 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.DataNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.LiveIdIndex;
+import ru.yandex.practicum.filmorate.index.ReviewSearchIndex;
 import ru.yandex.practicum.filmorate.model.FeedEntry;
 import ru.yandex.practicum.filmorate.model.FeedEventType;
 import ru.yandex.practicum.filmorate.model.FeedOperationType;
 import ru.yandex.practicum.filmorate.model.Review;
-import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
-import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.List;
 
@@ -17,9 +18,9 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ReviewService {
     private final ReviewStorage reviewStorage;
-    private final FilmStorage filmStorage;
-    private final UserStorage userStorage;
+    private final LiveIdIndex liveIdIndex;
     private final FeedService feedService;
+    private final ReviewSearchIndex reviewSearchIndex;
 
     public Review create(Review review) {
         if (reviewStorage.isAlreadyExists(review)) {
@@ -29,6 +30,7 @@ public class ReviewService {
         checkFilmExists(review.getFilmId());
 
         Review createdReview = reviewStorage.create(review);
+        reviewSearchIndex.put(createdReview);
 
         FeedEntry feedEntry = FeedEntry.builder()
                 .userId(review.getUserId())
@@ -44,6 +46,7 @@ public class ReviewService {
     public Review update(Review review) {
         checkReviewExists(review.getId());
         Review updatedReview = reviewStorage.update(review);
+        reviewSearchIndex.put(updatedReview);
 
         FeedEntry feedEntry = FeedEntry.builder()
                 .userId(updatedReview.getUserId())
@@ -57,8 +60,6 @@ public class ReviewService {
     }
 
     public void delete(int id) {
-        checkReviewExists(id);
-
         Review review = findById(id);
         FeedEntry feedEntry = FeedEntry.builder()
                 .userId(review.getUserId())
@@ -69,6 +70,7 @@ public class ReviewService {
         feedService.create(feedEntry);
 
         reviewStorage.delete(id);
+        reviewSearchIndex.delete(id);
     }
 
     public List<Review> findAll(int limit) {
@@ -79,6 +81,20 @@ public class ReviewService {
         return reviewStorage.findByFilmId(filmId, limit);
     }
 
+    /**
+     * Поиск по словам в тексте отзывов, по убыванию релевантности, затем полезности.
+     * Id находятся индексом в памяти, из базы отзывы читаются только по первичному ключу.
+     */
+    public List<Review> search(String query, Boolean isPositive, Integer filmId, int count) {
+        if (ReviewSearchIndex.tokenize(query).isEmpty()) {
+            throw new ValidationException("Поисковый запрос должен содержать хотя бы одно слово");
+        }
+        if (count < 1) {
+            throw new ValidationException(String.format("Количество отзывов должно быть больше 0, передано count=%d", count));
+        }
+        return reviewStorage.findByIds(reviewSearchIndex.search(query, isPositive, filmId, count));
+    }
+
     public Review findById(int id) {
         return reviewStorage.findById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден отзыв с id=%d", id)));
     }
@@ -88,7 +104,7 @@ public class ReviewService {
         checkUserExists(userId);
 
         reviewStorage.addLike(id, userId);
-        return findById(id);
+        return usefulChanged(findById(id));
     }
 
     public Review addDislike(int id, int userId) {
@@ -96,7 +112,7 @@ public class ReviewService {
         checkUserExists(userId);
 
         reviewStorage.addDislike(id, userId);
-        return findById(id);
+        return usefulChanged(findById(id));
     }
 
     public Review deleteLike(int id, int userId) {
@@ -104,7 +120,7 @@ public class ReviewService {
         checkUserExists(userId);
 
         reviewStorage.deleteLike(id, userId);
-        return findById(id);
+        return usefulChanged(findById(id));
     }
 
     public Review deleteDislike(int id, int userId) {
@@ -112,23 +128,28 @@ public class ReviewService {
         checkUserExists(userId);
 
         reviewStorage.deleteDislike(id, userId);
-        return findById(id);
+        return usefulChanged(findById(id));
+    }
+
+    private Review usefulChanged(Review review) {
+        reviewSearchIndex.updateUseful(review.getId(), review.getUseful());
+        return review;
     }
 
     private void checkReviewExists(int id) {
-        if (reviewStorage.findById(id).isEmpty()) {
+        if (!reviewStorage.existsById(id)) {
             throw new DataNotFoundException(String.format("Не найден отзыв с id=%d", id));
         }
     }
 
     private void checkUserExists(int userId) {
-        if (userStorage.findUserById(userId).isEmpty()) {
+        if (!liveIdIndex.userExists(userId)) {
             throw new DataNotFoundException(String.format("Не найден пользователь с id=%d", userId));
         }
     }
 
     private void checkFilmExists(int userId) {
-        if (filmStorage.findFilmById(userId).isEmpty()) {
+        if (!liveIdIndex.filmExists(userId)) {
             throw new DataNotFoundException(String.format("Не найден фильм для пользователя с id=%d", userId));
         }
     }
@@ -2,12 +2,19 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
 import ru.yandex.practicum.filmorate.exception.DataNotFoundException;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.index.LiveIdIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.index.ReviewSearchIndex;
+import ru.yandex.practicum.filmorate.index.TrendingFilmsIndex;
 import ru.yandex.practicum.filmorate.model.FeedEntry;
 import ru.yandex.practicum.filmorate.model.FeedEventType;
 import ru.yandex.practicum.filmorate.model.FeedOperationType;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FriendStorage;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.util.List;
@@ -18,6 +25,14 @@ public class UserService {
     private final UserStorage userStorage;
     private final FriendStorage friendStorage;
     private final FeedService feedService;
+    private final LikeStorage likeStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final TrendingFilmsIndex trendingFilmsIndex;
+    private final ReviewSearchIndex reviewSearchIndex;
+    private final LikeIndex likeIndex;
+    private final LiveIdIndex liveIdIndex;
+    private final RecommendationService recommendationService;
+    private final FilmCache filmCache;
 
     public List<User> findAll() {
         return userStorage.findAll();
@@ -25,12 +40,14 @@ public class UserService {
 
     public User create(User user) {
         validate(user);
-        return userStorage.create(user);
+        User created = userStorage.create(user);
+        liveIdIndex.addUser(created.getId());
+        return created;
     }
 
     public User update(User user) {
         validate(user);
-        userStorage.findUserById(user.getId()).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", user.getId())));
+        checkUserExists(user.getId());
         return userStorage.update(user);
     }
 
@@ -39,8 +56,7 @@ public class UserService {
     }
 
     public void addFriend(int userId, int friendId) {
-        userStorage.findUserById(userId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", userId)));
-        userStorage.findUserById(friendId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден друг с id=%d", friendId)));
+        checkUsersExist(userId, friendId, "Не найден друг с id=%d");
         friendStorage.addFriend(userId, friendId);
 
         FeedEntry feedEntry = FeedEntry.builder()
@@ -54,7 +70,7 @@ public class UserService {
     }
 
     public List<User> findAllFriends(int id) {
-        userStorage.findUserById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", id)));
+        checkUserExists(id);
         return friendStorage.findAllFriends(id);
     }
 
@@ -63,8 +79,7 @@ public class UserService {
     }
 
     public void removeFriend(int userId, int friendId) {
-        userStorage.findUserById(userId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", userId)));
-        userStorage.findUserById(friendId).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", friendId)));
+        checkUsersExist(userId, friendId, "Не найден пользователь с id=%d");
         friendStorage.removeFriend(userId, friendId);
 
         FeedEntry feedEntry = FeedEntry.builder()
@@ -77,6 +92,22 @@ public class UserService {
 
     }
 
+    private void checkUserExists(int id) {
+        if (!liveIdIndex.userExists(id)) {
+            throw new DataNotFoundException(String.format("Не найден пользователь с id=%d", id));
+        }
+    }
+
+    /**
+     * Оба пользователя проверяются одним обращением, по отдельности - только чтобы указать отсутствующего.
+     */
+    private void checkUsersExist(int userId, int friendId, String friendNotFound) {
+        if (!liveIdIndex.allUsersExist(List.of(userId, friendId))) {
+            checkUserExists(userId);
+            throw new DataNotFoundException(String.format(friendNotFound, friendId));
+        }
+    }
+
     private void validate(User user) {
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
@@ -84,7 +115,17 @@ public class UserService {
     }
 
     public void deleteUserById(int id) {
-        userStorage.findUserById(id).orElseThrow(() -> new DataNotFoundException(String.format("Не найден пользователь с id=%d", id)));
+        checkUserExists(id);
+        List<Integer> likedFilmIds = likeStorage.findFilmIdsByUserId(id);
         userStorage.deleteUserById(id);
+        liveIdIndex.removeUser(id);
+        filmCache.invalidateAll(likedFilmIds);
+        likedFilmIds.forEach(filmId -> {
+            popularFilmsIndex.changeLikes(filmId, -1);
+            trendingFilmsIndex.removeLike(filmId, id);
+        });
+        likeIndex.deleteUser(id);
+        reviewSearchIndex.deleteUser(id);
+        recommendationService.userDeleted(id);
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Director;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,5 +15,9 @@ public interface DirectorStorage {
 
     Optional<Director> findDirectorById(int id);
 
+    boolean existsById(int id);
+
+    boolean existsAll(Collection<Integer> ids);
+
     void removeDirectorById(int id);
 }
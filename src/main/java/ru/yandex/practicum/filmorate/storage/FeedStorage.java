@@ -3,10 +3,13 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.FeedEntry;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FeedStorage {
     FeedEntry create(FeedEntry feedEntry);
 
     List<FeedEntry> getUserFeed(int userId);
 
+    void forEachLikeEvent(Consumer<FeedEntry> consumer);
+
 }
@@ -1,32 +1,55 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public interface FilmStorage {
     Film create(Film film);
 
     Film update(Film film);
 
-    List<Film> findAllFilms();
+    List<Film> createAll(List<Film> films);
 
-    List<Film> findPopular(Integer count, Integer genreId, Integer year);
+    List<Film> findAllFilms(Set<FilmField> fields);
 
-    List<Film> findFilmsByDirectorID(int id, String sortedBy);
+    List<Film> findFilmsPage(int after, int limit, Set<FilmField> fields);
+
+    void exportAllFilms(Consumer<List<Film>> batchConsumer);
+
+    List<Film> findPopular(Integer count, FilmFilter filter, Set<FilmField> fields);
+
+    List<Film> findTrending(Integer count, FilmFilter filter, Duration halfLife, Set<FilmField> fields);
+
+    List<Film> findFilmsByDirectorID(int id, String sortedBy, Integer limit, int offset, Set<FilmField> fields);
 
     List<Film> findRecommendedFilms(int userId);
 
-    List<Film> findCommonFilms(int userId, int friendId);
+    List<Film> findCommonFilms(int userId, int friendId, Set<FilmField> fields);
+
+    Optional<Film> findFilmById(int id, Set<FilmField> fields);
+
+    boolean existsById(int id);
+
+    boolean existsAll(Collection<Integer> ids);
+
+    void forEachFilmId(IntConsumer consumer);
 
-    Optional<Film> findFilmById(int id);
+    List<Film> findFilmsByIds(List<Integer> ids, Set<FilmField> fields);
 
     void deleteFilmById(int id);
 
-    List<Film> searchFilmsByDirAndName(String query);
+    List<Film> searchFilmsByDirAndName(String query, Set<FilmField> fields);
 
-    List<Film> searchFilmsByName(String query);
+    List<Film> searchFilmsByName(String query, Set<FilmField> fields);
 
-    List<Film> searchFilmsByDir(String query);
+    List<Film> searchFilmsByDir(String query, Set<FilmField> fields);
 }
@@ -1,7 +1,25 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import java.time.Instant;
+import java.util.List;
+
 public interface LikeStorage {
-    void addLike(int id, int userId);
+    boolean addLike(int id, int userId, Instant likedAt);
+
+    boolean removeLike(int id, int userId);
+
+    List<Integer> findFilmIdsByUserId(int userId);
+
+    List<Integer> repairLikesCount();
+
+    int backfillCoLikes();
+
+    List<Integer> findSimilarFilmIds(int filmId, int limit);
+
+    void forEachLike(LikeConsumer consumer);
 
-    void removeLike(int id, int userId);
+    @FunctionalInterface
+    interface LikeConsumer {
+        void accept(int filmId, int userId);
+    }
 }
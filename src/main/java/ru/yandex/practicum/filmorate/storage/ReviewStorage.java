@@ -2,8 +2,10 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Review;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface ReviewStorage {
 
@@ -19,6 +21,14 @@ public interface ReviewStorage {
 
     Optional<Review> findById(int id);
 
+    boolean existsById(int id);
+
+    boolean existsAll(Collection<Integer> ids);
+
+    List<Review> findByIds(List<Integer> ids);
+
+    void forEachReview(Consumer<Review> consumer);
+
     boolean isAlreadyExists(Review review);
 
     void addLike(int id, int userId);
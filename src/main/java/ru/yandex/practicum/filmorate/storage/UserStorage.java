@@ -2,8 +2,10 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 
 public interface UserStorage {
     User create(User user);
@@ -14,5 +16,11 @@ public interface UserStorage {
 
     Optional<User> findUserById(int id);
 
+    boolean existsById(int id);
+
+    boolean existsAll(Collection<Integer> ids);
+
+    void forEachUserId(IntConsumer consumer);
+
     void deleteUserById(int id);
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ DROP TABLE IF EXISTS review_actions CASCADE;
 DROP TABLE IF EXISTS feed CASCADE;
 DROP TABLE IF EXISTS directors CASCADE;
 DROP TABLE IF EXISTS film_directors CASCADE;
+DROP TABLE IF EXISTS film_co_likes CASCADE;
 
 
 create table if not exists users
@@ -34,9 +35,11 @@ create table if not exists friendship
     FOREIGN KEY (friend_id) REFERENCES users (user_id) ON DELETE CASCADE
 );
 
+create index if not exists friendship_friend_idx on friendship (friend_id, user_id);
+
 create table if not exists mpa_rating
 (
-    rating_id int auto_increment,
+    rating_id int auto_increment primary key,
     name      varchar(255)
 );
 
@@ -55,27 +58,49 @@ create table if not exists films
     description varchar(200) NOT NULL,
     releaseDate date         NOT NULL,
     duration    int,
-    rating_id   int
+    rating_id   int,
+    likes_count int          NOT NULL DEFAULT 0,
+    release_year int GENERATED ALWAYS AS (EXTRACT(YEAR FROM releaseDate))
 );
 
+create index if not exists films_likes_count_idx on films (likes_count DESC, film_id);
+create index if not exists films_year_likes_count_idx on films (release_year, likes_count DESC, film_id);
+
 create table if not exists film_directors
 (
-    id          int auto_increment,
     film_id     int,
     director_id int,
+    PRIMARY KEY (film_id, director_id),
     FOREIGN KEY (film_id) REFERENCES films (film_id) ON DELETE CASCADE,
     FOREIGN KEY (director_id) REFERENCES directors (director_id) ON DELETE CASCADE
 );
 
+create index if not exists film_directors_director_film_idx on film_directors (director_id, film_id);
+
 create table if not exists likes
 (
     film_id int,
     user_id int,
+    created_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
     PRIMARY KEY (user_id, film_id),
     FOREIGN KEY (film_id) REFERENCES films (film_id) ON DELETE CASCADE,
     FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE
 );
 
+create index if not exists likes_film_user_idx on likes (film_id, user_id);
+
+create table if not exists film_co_likes
+(
+    film_id       int,
+    other_film_id int,
+    co_likes      int NOT NULL,
+    PRIMARY KEY (film_id, other_film_id),
+    FOREIGN KEY (film_id) REFERENCES films (film_id) ON DELETE CASCADE,
+    FOREIGN KEY (other_film_id) REFERENCES films (film_id) ON DELETE CASCADE
+);
+
+create index if not exists film_co_likes_rank_idx on film_co_likes (film_id, co_likes DESC, other_film_id);
+
 create table if not exists genres
 (
     genre_id int auto_increment primary key,
@@ -84,13 +109,15 @@ create table if not exists genres
 
 create table if not exists film_genres
 (
-    id       int auto_increment,
     film_id  int,
     genre_id int,
+    PRIMARY KEY (film_id, genre_id),
     FOREIGN KEY (film_id) REFERENCES films (film_id) ON DELETE CASCADE,
     FOREIGN KEY (genre_id) REFERENCES genres (genre_id) ON DELETE CASCADE
 );
 
+create index if not exists film_genres_genre_film_idx on film_genres (genre_id, film_id);
+
 create table if not exists reviews
 (
     review_id   int auto_increment PRIMARY KEY,
@@ -104,6 +131,8 @@ create table if not exists reviews
 );
 
 create unique index if not exists reviews_user_film_idx ON reviews (user_id, film_id);
+create index if not exists reviews_useful_idx ON reviews (useful DESC, review_id);
+create index if not exists reviews_film_useful_idx ON reviews (film_id, useful DESC, review_id);
 
 create table if not exists review_actions
 (
@@ -127,4 +156,6 @@ CREATE TABLE IF NOT EXISTS feed
     CHECK (event_type in ('LIKE', 'REVIEW', 'FRIEND')),
     CHECK (operation in ('REMOVE', 'ADD', 'UPDATE')),
     FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+create index if not exists feed_user_idx on feed (user_id, event_id);
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.exception.DataNotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Изменение и удаление режиссера должны быть видны во всех кэшах: в справочнике режиссеров,
+ * в закэшированных фильмах этого режиссера и в поиске по режиссеру.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:director-service;DB_CLOSE_DELAY=-1",
+        "filmorate.recommendations.precompute=false"
+})
+class DirectorServiceTest {
+    @Autowired
+    private DirectorService directorService;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private FilmCache filmCache;
+
+    @Test
+    void directorUpdateAndRemovalAreVisibleInCachedReads() {
+        Director director = directorService.create(Director.builder().name("Старое имя").build());
+        Film film = filmService.create(film(director));
+        assertEquals("Старое имя", directorName(filmService.findFilmById(film.getId())));
+        long hits = filmCache.stats().getHits();
+        filmService.findFilmById(film.getId());
+        assertEquals(hits + 1, filmCache.stats().getHits(), "Фильм должен читаться из кэша");
+
+        directorService.update(Director.builder().id(director.getId()).name("Новое имя").build());
+
+        assertEquals("Новое имя", directorName(filmService.findFilmById(film.getId())));
+        assertEquals("Новое имя", directorService.findDirectorById(director.getId()).getName());
+        assertTrue(directorService.findAllDirectors().stream().anyMatch(found -> found.getName().equals("Новое имя")));
+        assertEquals(List.of(film.getId()), searchByDirector("новое"));
+        assertEquals(List.of(), searchByDirector("старое"));
+
+        directorService.removeDirectorById(director.getId());
+
+        assertEquals(Set.of(), filmService.findFilmById(film.getId()).getDirectors());
+        assertThrows(DataNotFoundException.class, () -> directorService.findDirectorById(director.getId()));
+        assertEquals(List.of(), searchByDirector("новое"));
+    }
+
+    private List<Integer> searchByDirector(String query) {
+        return filmService.searchFilm(query, List.of("director"), null, null, null).getFilms().stream()
+                .map(Film::getId)
+                .toList();
+    }
+
+    private static String directorName(Film film) {
+        return film.getDirectors().iterator().next().getName();
+    }
+
+    private static Film film(Director director) {
+        Film film = Film.builder()
+                .name("Фильм")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, null))
+                .build();
+        film.getDirectors().add(director);
+        return film;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Поведение эндпоинтов фильмов через MockMvc. Размер части пакетной загрузки уменьшен до 2,
+ * чтобы пакеты из нескольких фильмов писались несколькими частями.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:film-controller;DB_CLOSE_DELAY=-1",
+        "filmorate.recommendations.precompute=false",
+        "filmorate.films.batch-size=2"
+})
+@AutoConfigureMockMvc
+class FilmControllerTest {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Test
+    void batchAcceptsJsonArrayAndNdjsonAndReturnsIdsInOrder() throws Exception {
+        List<String> films = List.of(
+                filmJson("Array One", 1, 2),
+                filmJson("Array Two"),
+                filmJson("Array Three", 3));
+        List<Integer> arrayIds = postBatch(MediaType.APPLICATION_JSON, "[" + String.join(",", films) + "]");
+        List<Integer> ndjsonIds = postBatch(NDJSON, films.stream()
+                .map(film -> film.replace("Array", "Ndjson") + "\n")
+                .collect(Collectors.joining()));
+
+        assertEquals(3, arrayIds.size());
+        assertEquals(3, ndjsonIds.size());
+        for (int i = 0; i < 3; i++) {
+            JsonNode fromArray = getFilm(arrayIds.get(i));
+            JsonNode fromNdjson = getFilm(ndjsonIds.get(i));
+            assertEquals(List.of("Array One", "Array Two", "Array Three").get(i), fromArray.get("name").asText());
+            assertEquals(fromArray.get("name").asText().replace("Array", "Ndjson"), fromNdjson.get("name").asText());
+            assertEquals(fromArray.get("genres"), fromNdjson.get("genres"));
+            assertEquals(fromArray.get("mpa"), fromNdjson.get("mpa"));
+        }
+        assertTrue(arrayIds.get(0) < arrayIds.get(1) && arrayIds.get(1) < arrayIds.get(2));
+    }
+
+    @Test
+    void badReferenceRejectsItsChunkAndKeepsEarlierChunks() throws Exception {
+        List<String> films = new ArrayList<>();
+        IntStream.range(0, 5).forEach(i -> films.add(i == 3 ? filmJson("Chunk " + i, 99) : filmJson("Chunk " + i)));
+
+        JsonNode error = postBatchErrorBody("[" + String.join(",", films) + "]");
+
+        assertEquals("Фильм с индексом 3: Не найден жанр с id=99", error.get("error").asText());
+        assertEquals(3, error.get("failedIndex").asInt());
+        List<Integer> createdIds = List.of(objectMapper.treeToValue(error.get("createdIds"), Integer[].class));
+        assertEquals(2, createdIds.size());
+        assertEquals(List.of("Chunk 0", "Chunk 1"), filmNames("Chunk %"));
+        for (int i = 0; i < createdIds.size(); i++) {
+            assertEquals("Chunk " + i, getFilm(createdIds.get(i)).get("name").asText());
+        }
+    }
+
+    @Test
+    void failedChunkIsRolledBack() {
+        Director missing = Director.builder().id(Integer.MAX_VALUE).name("Нет в базе").build();
+        Film valid = film("Rollback valid");
+        Film invalid = film("Rollback invalid");
+        invalid.getDirectors().add(missing);
+
+        assertThrows(DataIntegrityViolationException.class, () -> filmStorage.createAll(List.of(valid, invalid)));
+        assertEquals(List.of(), filmNames("Rollback %"));
+    }
+
+    @Test
+    void invalidFilmIsReportedWithItsIndex() throws Exception {
+        assertEquals("Фильм с индексом 1: Введите название фильма. Продолжительность фильма должна быть больше 0.",
+                postBatchError("[" + filmJson("Invalid 0") + ","
+                        + filmJson("").replace("\"duration\":100", "\"duration\":-1") + "]"));
+        assertEquals("Фильм с индексом 0: Не указан рейтинг mpa",
+                postBatchError("[" + filmJson("Invalid mpa").replace(",\"mpa\":{\"id\":1}", "") + "]"));
+        assertTrue(postBatchError("[" + filmJson("Invalid json") + ",{\"name\":")
+                .startsWith("Некорректный фильм с индексом 1: "));
+        assertEquals(1, postBatchErrorBody("[" + filmJson("Invalid json") + ",{\"name\":").get("failedIndex").asInt());
+        assertEquals(List.of(), filmNames("Invalid %"));
+    }
+
+    private List<Integer> postBatch(MediaType contentType, String body) throws Exception {
+        MvcResult result = mockMvc.perform(post("/films/batch").contentType(contentType).content(body))
+                .andExpect(status().isOk())
+                .andReturn();
+        return List.of(objectMapper.readValue(result.getResponse().getContentAsString(), Integer[].class));
+    }
+
+    private String postBatchError(String body) throws Exception {
+        JsonNode error = postBatchErrorBody(body);
+        assertEquals(0, error.get("createdIds").size());
+        return error.get("error").asText();
+    }
+
+    private JsonNode postBatchErrorBody(String body) throws Exception {
+        MvcResult result = mockMvc.perform(post("/films/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray());
+    }
+
+    private JsonNode getFilm(int id) throws Exception {
+        MvcResult result = mockMvc.perform(get("/films/{id}", id))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray());
+    }
+
+    private List<String> filmNames(String pattern) {
+        return jdbcTemplate.queryForList("SELECT name FROM films WHERE name LIKE ? ORDER BY film_id", String.class, pattern);
+    }
+
+    private static String filmJson(String name, int... genreIds) {
+        String genres = IntStream.of(genreIds).mapToObj(id -> "{\"id\":" + id + "}").collect(Collectors.joining(","));
+        return "{\"name\":\"" + name + "\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\",\"duration\":100"
+                + ",\"mpa\":{\"id\":1},\"genres\":[" + genres + "]}";
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("d")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, null))
+                .build();
+    }
+}
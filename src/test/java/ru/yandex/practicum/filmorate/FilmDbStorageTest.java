@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Запись фильма без повторного чтения: фильм, который возвращают create и update, должен совпадать
+ * с фильмом, прочитанным из базы, в том числе по порядку жанров, удаленным связям и количеству лайков.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:film-storage;DB_CLOSE_DELAY=-1",
+        "filmorate.recommendations.precompute=false"
+})
+class FilmDbStorageTest {
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private DirectorStorage directorStorage;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private LikeStorage likeStorage;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void writtenFilmMatchesFilmReadBack() {
+        Director first = directorStorage.create(Director.builder().name("Первый").build());
+        Director second = directorStorage.create(Director.builder().name("Второй").build());
+        Director third = directorStorage.create(Director.builder().name("Третий").build());
+        User user = userStorage.create(User.builder()
+                .email("like@mail.ru").login("like").name("like").birthday(LocalDate.of(1990, 1, 1)).build());
+
+        Film created = filmStorage.create(film(List.of(3, 1, 3), first, second));
+        assertMatchesDatabase(created);
+        assertEquals(List.of(1, 3), genreIds(created));
+
+        likeStorage.addLike(created.getId(), user.getId(), Instant.now());
+
+        Film added = filmStorage.update(withId(film(List.of(4, 2, 1, 3), first, second, third), created.getId()));
+        assertMatchesDatabase(added);
+        assertEquals(List.of(1, 2, 3, 4), genreIds(added));
+        assertEquals(1, added.getLikesCount());
+        assertEquals(Set.of(user.getId()), added.getLikes());
+
+        Film removed = filmStorage.update(withId(film(List.of(4, 2), third), created.getId()));
+        assertMatchesDatabase(removed);
+        assertEquals(List.of(2, 4), genreIds(removed));
+        assertEquals(Set.of(third), removed.getDirectors());
+        assertEquals(List.of(2, 4), linkedIds("SELECT genre_id FROM film_genres WHERE film_id = ? ORDER BY genre_id", created.getId()));
+        assertEquals(List.of(third.getId()), linkedIds("SELECT director_id FROM film_directors WHERE film_id = ?", created.getId()));
+
+        Film reordered = filmStorage.update(withId(film(List.of(2, 4), third), created.getId()));
+        assertMatchesDatabase(reordered);
+        assertEquals(List.of(2, 4), genreIds(reordered));
+
+        Film cleared = filmStorage.update(withId(film(List.of()), created.getId()));
+        assertMatchesDatabase(cleared);
+        assertEquals(List.of(), genreIds(cleared));
+        assertEquals(Set.of(), cleared.getDirectors());
+        assertEquals(1, cleared.getLikesCount());
+    }
+
+    private void assertMatchesDatabase(Film written) {
+        Film stored = filmStorage.findFilmById(written.getId(), FilmField.ALL).orElseThrow();
+        assertEquals(stored, written);
+        assertEquals(genreIds(stored), genreIds(written));
+        assertEquals(new ArrayList<>(stored.getGenres()), new ArrayList<>(written.getGenres()));
+    }
+
+    private List<Integer> linkedIds(String sql, int filmId) {
+        return jdbcTemplate.queryForList(sql, Integer.class, filmId);
+    }
+
+    private static List<Integer> genreIds(Film film) {
+        return film.getGenres().stream().map(Genre::getId).toList();
+    }
+
+    private static Film withId(Film film, int id) {
+        film.setId(id);
+        return film;
+    }
+
+    private static Film film(List<Integer> genreIds, Director... directors) {
+        LinkedHashSet<Genre> genres = new LinkedHashSet<>();
+        genreIds.forEach(id -> genres.add(new Genre(id, null)));
+        Film film = Film.builder()
+                .name("Фильм")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(2, null))
+                .genres(genres)
+                .build();
+        film.getDirectors().addAll(List.of(directors));
+        return film;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Выгрузка GET /films/export: по одной строке NDJSON на каждый фильм таблицы, в порядке id.
+ * Фильмов больше, чем помещается в две пачки выгрузки по 100. Пул соединений уменьшен до двух,
+ * чтобы параллельных выгрузок было больше, чем соединений.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:film-export;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=" + FilmExportTest.POOL_SIZE,
+        "spring.datasource.hikari.connection-timeout=3000",
+        "filmorate.recommendations.precompute=false"
+})
+@AutoConfigureMockMvc
+class FilmExportTest {
+    static final int POOL_SIZE = 2;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private FilmService filmService;
+
+    @Test
+    void exportWritesEveryFilmOnceInIdOrder() throws Exception {
+        createFilms(250);
+
+        String body = export();
+
+        List<String> lines = body.lines().toList();
+        assertTrue(body.endsWith("\n"));
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Integer.class), lines.size());
+        List<Integer> ids = new ArrayList<>();
+        for (String line : lines) {
+            ids.add(objectMapper.readTree(line).get("id").asInt());
+        }
+        assertEquals(jdbcTemplate.queryForList("SELECT film_id FROM films ORDER BY film_id", Integer.class), ids);
+    }
+
+    /**
+     * Выгрузки по парам ждут друг друга на первой пачке, то есть одновременно держат открытые курсоры.
+     * Выгрузка, которой нужно второе соединение на догрузку связей, здесь не дождалась бы его.
+     */
+    @Test
+    void moreConcurrentExportsThanPoolConnectionsComplete() throws Exception {
+        createFilms(150);
+        int exports = POOL_SIZE * 2;
+        CyclicBarrier together = new CyclicBarrier(POOL_SIZE);
+        ExecutorService executor = Executors.newFixedThreadPool(exports);
+        try {
+            List<Future<Integer>> counts = new ArrayList<>();
+            for (int i = 0; i < exports; i++) {
+                counts.add(executor.submit(() -> {
+                    AtomicInteger count = new AtomicInteger();
+                    filmService.exportAllFilms(films -> {
+                        if (count.getAndAdd(films.size()) == 0) {
+                            try {
+                                together.await(10, TimeUnit.SECONDS);
+                            } catch (Exception e) {
+                                throw new IllegalStateException(e);
+                            }
+                        }
+                    });
+                    return count.get();
+                }));
+            }
+            int total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Integer.class);
+            for (Future<Integer> count : counts) {
+                assertEquals(total, count.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void createFilms(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Export " + i + "\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\""
+                                    + ",\"duration\":100,\"mpa\":{\"id\":1},\"genres\":[{\"id\":" + (i % 6 + 1) + "}]}"))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    private String export() throws Exception {
+        MvcResult started = mockMvc.perform(get("/films/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+}
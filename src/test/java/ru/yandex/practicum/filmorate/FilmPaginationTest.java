@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.yandex.practicum.filmorate.controller.FilmController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Постраничный GET /films по X-Next-Cursor: страницы вместе дают тот же список, что и запрос без страниц,
+ * без пропусков и повторов, даже когда у фильмов одинаковое число лайков и лайки меняются между страницами.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:film-pagination;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class FilmPaginationTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void cursorWalksAllFilmsOnceWhenLikesTieAndChangeBetweenPages() throws Exception {
+        List<Integer> created = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            created.add(createFilm("Cursor " + i));
+        }
+        int userId = createUser();
+        for (int id : created) {
+            mockMvc.perform(put("/films/{id}/like/{userId}", id, userId)).andExpect(status().isOk());
+        }
+
+        List<Integer> all = filmIds(mockMvc.perform(get("/films")).andExpect(status().isOk()).andReturn());
+        assertEquals(created, all);
+        assertEquals(all, walkPages(created, userId));
+    }
+
+    @Test
+    void lastPageHasNoCursor() throws Exception {
+        MvcResult result = mockMvc.perform(get("/films").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertNull(result.getResponse().getHeader(FilmController.NEXT_CURSOR_HEADER));
+        mockMvc.perform(get("/films").param("limit", "0")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Проходит страницы по 2 фильма по X-Next-Cursor, после каждой страницы снимая лайк с очередного фильма,
+     * чтобы число лайков менялось между запросами.
+     */
+    private List<Integer> walkPages(List<Integer> films, int userId) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MockHttpServletRequestBuilder request = get("/films").param("limit", "2");
+            if (cursor != null) {
+                request.param("after", cursor);
+            }
+            MvcResult result = mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+            ids.addAll(filmIds(result));
+            cursor = result.getResponse().getHeader(FilmController.NEXT_CURSOR_HEADER);
+            if (pages < films.size()) {
+                mockMvc.perform(delete("/films/{id}/like/{userId}", films.get(pages), userId)).andExpect(status().isOk());
+            }
+            pages++;
+        } while (cursor != null);
+        return ids;
+    }
+
+    private List<Integer> filmIds(MvcResult result) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        objectMapper.readTree(result.getResponse().getContentAsByteArray()).forEach(film -> ids.add(film.get("id").asInt()));
+        return ids;
+    }
+
+    private int createFilm(String name) throws Exception {
+        return postForId("/films", "{\"name\":\"" + name + "\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\""
+                + ",\"duration\":100,\"mpa\":{\"id\":1}}");
+    }
+
+    private int createUser() throws Exception {
+        return postForId("/users", "{\"email\":\"cursor@mail.ru\",\"login\":\"cursor\",\"name\":\"cursor\""
+                + ",\"birthday\":\"1990-01-01\"}");
+    }
+
+    private int postForId(String path, String body) throws Exception {
+        MvcResult result = mockMvc.perform(post(path).contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray()).get("id").asInt();
+    }
+}
@@ -0,0 +1,190 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.cache.ReferenceData;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmPage;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Поиск по индексу в памяти должен давать те же фильмы в том же порядке, что и поиск в базе
+ * через UPPER(x) LIKE UPPER('%q%'): для коротких запросов, регистра не-ASCII букв, совпадений только
+ * по режиссеру и поиска по названию и режиссеру вместе. Постраничный поиск по курсору дает тот же список.
+ * Бюджет нечеткого поиска не тратится на ожидание перестроения индекса.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:film-search;DB_CLOSE_DELAY=-1",
+        "filmorate.recommendations.precompute=false"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FilmSearchIndexTest {
+    private static final Set<FilmField> IDS = EnumSet.of(FilmField.ID);
+
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private DirectorService directorService;
+    @Autowired
+    private FilmSearchIndex filmSearchIndex;
+    @Autowired
+    private FilmStorage filmStorage;
+
+    private Film alien;
+    private Film arger;
+
+    @BeforeAll
+    void createFilms() {
+        Director wachowski = directorService.create(Director.builder().name("Лана Вачовски").build());
+        Director scott = directorService.create(Director.builder().name("Ridley Scott").build());
+        Director yilmaz = directorService.create(Director.builder().name("Cem Yılmaz").build());
+
+        filmService.create(film("Матрица", wachowski));
+        filmService.create(film("матрица: ПЕРЕЗАГРУЗКА", wachowski));
+        filmService.create(film("The MATRIX", null));
+        alien = filmService.create(film("Чужой", scott));
+        filmService.create(film("Ёлки", null));
+        filmService.create(film("елки-палки", null));
+        filmService.create(film("Die Straße", null));
+        filmService.create(film("STRASSE", yilmaz));
+        filmService.create(film("İstanbul", null));
+        filmService.create(film("istanbul", null));
+        arger = filmService.create(film("Ärger", scott));
+        filmService.create(film("x", null));
+    }
+
+    @Test
+    void directorOnlyMatchIsFoundWithoutTitleMatch() {
+        assertEquals(List.of(), filmSearchIndex.search("scott", true, false));
+        assertEquals(List.of(arger.getId(), alien.getId()), filmSearchIndex.search("scott", false, true));
+        assertEquals(List.of(arger.getId(), alien.getId()), filmSearchIndex.search("scott", true, true));
+    }
+
+    /**
+     * Перестроение отдельного индекса на подмененных хранилищах задерживается в загрузке фильмов и держит
+     * блокировку записи дольше бюджета. Поиск, дождавшийся блокировки, должен найти все, а не пустой результат.
+     */
+    @Test
+    void waitingForRebuildDoesNotSpendFuzzyBudget() throws Exception {
+        FilmStorage storage = mock(FilmStorage.class);
+        ReferenceData referenceData = mock(ReferenceData.class);
+        List<Film> films = List.of(Film.builder().id(1).name("Terminator").build(),
+                Film.builder().id(2).name("Terminator 2").build(), Film.builder().id(3).name("Titanic").build());
+        CountDownLatch rebuildStarted = new CountDownLatch(1);
+        CountDownLatch releaseRebuild = new CountDownLatch(1);
+        when(referenceData.findAllDirectors()).thenReturn(List.of());
+        when(storage.findAllFilms(any()))
+                .thenReturn(films)
+                .thenAnswer(invocation -> {
+                    rebuildStarted.countDown();
+                    releaseRebuild.await();
+                    return films;
+                });
+        FilmSearchIndex index = new FilmSearchIndex(storage, referenceData, true, 0.3, Duration.ofMillis(50));
+        index.rebuild();
+        List<Integer> expected = index.searchFuzzy("terminatr", true, false, 10);
+        assertEquals(List.of(1, 2), expected);
+
+        CompletableFuture<Void> rebuild = CompletableFuture.runAsync(index::rebuild);
+        rebuildStarted.await();
+        CompletableFuture<List<Integer>> search =
+                CompletableFuture.supplyAsync(() -> index.searchFuzzy("terminatr", true, false, 10));
+        Thread.sleep(200);
+        assertFalse(search.isDone());
+        releaseRebuild.countDown();
+
+        rebuild.get(5, TimeUnit.SECONDS);
+        assertEquals(expected, search.get(5, TimeUnit.SECONDS));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"а", "i", "e"})
+    void pagesFollowCursorWithoutGapsOrRepeats(String query) {
+        List<String> by = List.of("title", "director");
+        List<Integer> all = filmService.searchFilm(query, by, null, null, IDS).getFilms().stream().map(Film::getId).toList();
+        List<Integer> paged = new ArrayList<>();
+        Integer cursor = null;
+        do {
+            FilmPage page = filmService.searchFilm(query, by, cursor, 2, IDS);
+            page.getFilms().forEach(film -> paged.add(film.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertTrue(all.size() > 2, "Запрос должен давать больше одной страницы: " + query);
+        assertEquals(all, paged);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"м", "М", "x", "X", "ма", "РИ", "at", "AT", "ё", "Ё", "е", "ЁЛ", "ß", "ss", "SS", "ä", "Ä",
+            "i", "I", "İ", "ı", "is", "матрица", "МАТРИЦА", "ца: п", " ", "нет такого"})
+    void titleSearchMatchesDatabase(String query) {
+        assertMatchesDatabase(query, true, false);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sc", "SCOTT", "во", "ВАЧ", "ı", "Y", "лана в", "a"})
+    void directorSearchMatchesDatabase(String query) {
+        assertMatchesDatabase(query, false, true);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"а", "sc", "ма", "ä", "i", "т", "ридли"})
+    void titleAndDirectorSearchMatchesDatabase(String query) {
+        assertMatchesDatabase(query, true, true);
+    }
+
+    private void assertMatchesDatabase(String query, boolean byTitle, boolean byDirector) {
+        assertTrue(filmSearchIndex.supports(query), "Запрос должен обслуживаться индексом: " + query);
+        List<Film> expected;
+        if (!byDirector) {
+            expected = filmStorage.searchFilmsByName(query, IDS);
+        } else if (!byTitle) {
+            expected = filmStorage.searchFilmsByDir(query, IDS);
+        } else {
+            expected = filmStorage.searchFilmsByDirAndName(query, IDS);
+        }
+        assertEquals(expected.stream().map(Film::getId).toList(), filmSearchIndex.search(query, byTitle, byDirector),
+                "Результат индекса разошелся с базой для запроса '" + query + "'");
+    }
+
+    private static Film film(String name, Director director) {
+        Film film = Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, null))
+                .build();
+        if (director != null) {
+            film.getDirectors().add(director);
+        }
+        return film;
+    }
+}
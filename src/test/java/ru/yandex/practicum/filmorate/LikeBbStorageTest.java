@@ -0,0 +1,187 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Совместные лайки film_co_likes, которые поддерживаются при каждом лайке, должны совпадать с пересчетом
+ * по таблице likes, в том числе когда пользователи выходят за лимит лайков и возвращаются в него.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:like-storage;DB_CLOSE_DELAY=-1",
+        "filmorate.recommendations.precompute=false",
+        "filmorate.similar.max-user-likes=3"
+})
+class LikeBbStorageTest {
+    private static final int MAX_USER_LIKES = 3;
+
+    @Autowired
+    private LikeStorage likeStorage;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void coLikesMatchLikesAfterRandomLikesAndDeletedUser() {
+        List<Integer> films = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            films.add(filmStorage.create(film()).getId());
+        }
+        List<Integer> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(userStorage.create(user(i)).getId());
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            int filmId = films.get(random.nextInt(films.size()));
+            int userId = users.get(random.nextInt(users.size()));
+            if (random.nextBoolean()) {
+                likeStorage.addLike(filmId, userId, Instant.now());
+            } else {
+                likeStorage.removeLike(filmId, userId);
+            }
+            assertEquals(expectedCoLikes(), coLikes(), "Расхождение после шага " + i);
+        }
+        userStorage.deleteUserById(users.get(0));
+        assertEquals(expectedCoLikes(), coLikes());
+        assertEquals(0, likeStorage.backfillCoLikes());
+    }
+
+    /**
+     * Половина пользователей уже лайкнула первый фильм и лайкает второй, половина - наоборот. Лайки разных фильмов
+     * не ждут друг друга на строке films, поэтому транзакции одновременно вставляют одну и ту же новую пару.
+     */
+    @Test
+    void concurrentLikesCreatingSamePairAreAllCounted() throws Exception {
+        int first = filmStorage.create(film()).getId();
+        int second = filmStorage.create(film()).getId();
+        Map<Integer, Integer> likedNext = new HashMap<>();
+        for (int i = 0; i < 32; i++) {
+            int userId = userStorage.create(user(200 + i)).getId();
+            likeStorage.addLike(i % 2 == 0 ? first : second, userId, Instant.now());
+            likedNext.put(userId, i % 2 == 0 ? second : first);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(likedNext.size());
+        try {
+            List<Future<Boolean>> likes = new ArrayList<>();
+            likedNext.forEach((userId, filmId) -> likes.add(executor.submit(() -> {
+                start.await();
+                return likeStorage.addLike(filmId, userId, Instant.now());
+            })));
+            start.countDown();
+            for (Future<Boolean> like : likes) {
+                assertTrue(like.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(likedNext.size(), coLikes().get(List.of(first, second)));
+        assertEquals(likedNext.size(), coLikes().get(List.of(second, first)));
+        assertEquals(List.of(likedNext.size(), likedNext.size()), jdbcTemplate.queryForList(
+                "SELECT likes_count FROM films WHERE film_id IN (?, ?)", Integer.class, first, second));
+    }
+
+    @Test
+    void deletedFilmReturnsUserWithinLimit() {
+        List<Integer> films = new ArrayList<>();
+        for (int i = 0; i <= MAX_USER_LIKES; i++) {
+            films.add(filmStorage.create(film()).getId());
+        }
+        int userId = userStorage.create(user(300)).getId();
+        int otherUserId = userStorage.create(user(301)).getId();
+        films.forEach(filmId -> likeStorage.addLike(filmId, userId, Instant.now()));
+        likeStorage.addLike(films.get(1), otherUserId, Instant.now());
+        likeStorage.addLike(films.get(2), otherUserId, Instant.now());
+        assertEquals(1, coLikes().get(List.of(films.get(1), films.get(2))));
+
+        filmStorage.deleteFilmById(films.get(0));
+        assertEquals(2, coLikes().get(List.of(films.get(1), films.get(2))));
+        assertEquals(expectedCoLikes(), coLikes());
+        assertEquals(0, likeStorage.backfillCoLikes());
+    }
+
+    @Test
+    void backfillRebuildsDriftedCoLikes() {
+        int first = filmStorage.create(film()).getId();
+        int second = filmStorage.create(film()).getId();
+        int userId = userStorage.create(user(100)).getId();
+        likeStorage.addLike(first, userId, Instant.now());
+        likeStorage.addLike(second, userId, Instant.now());
+        Map<List<Integer>, Integer> expected = coLikes();
+        assertTrue(expected.containsKey(List.of(first, second)));
+
+        jdbcTemplate.update("UPDATE film_co_likes SET co_likes = co_likes + 1 WHERE film_id = ?", first);
+        assertTrue(likeStorage.backfillCoLikes() > 0);
+        assertEquals(expected, coLikes());
+        assertEquals(0, likeStorage.backfillCoLikes());
+    }
+
+    /**
+     * Пары фильмов по лайкам пользователей, у которых не больше MAX_USER_LIKES лайков.
+     */
+    private Map<List<Integer>, Integer> expectedCoLikes() {
+        Map<Integer, Set<Integer>> filmsByUser = new HashMap<>();
+        likeStorage.forEachLike((filmId, userId) -> filmsByUser.computeIfAbsent(userId, id -> new HashSet<>()).add(filmId));
+        Map<List<Integer>, Integer> pairs = new HashMap<>();
+        filmsByUser.values().stream()
+                .filter(liked -> liked.size() <= MAX_USER_LIKES)
+                .forEach(liked -> liked.forEach(a -> liked.stream()
+                        .filter(b -> !b.equals(a))
+                        .forEach(b -> pairs.merge(List.of(a, b), 1, Integer::sum))));
+        return pairs;
+    }
+
+    private Map<List<Integer>, Integer> coLikes() {
+        Map<List<Integer>, Integer> pairs = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, other_film_id, co_likes FROM film_co_likes", rs -> {
+            pairs.put(List.of(rs.getInt("film_id"), rs.getInt("other_film_id")), rs.getInt("co_likes"));
+        });
+        return pairs;
+    }
+
+    private static Film film() {
+        return Film.builder()
+                .name("Фильм")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, null))
+                .build();
+    }
+
+    private static User user(int i) {
+        return User.builder()
+                .email("user" + i + "@mail.ru").login("user" + i).name("user" + i).birthday(LocalDate.of(1990, 1, 1)).build();
+    }
+}
@@ -0,0 +1,144 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikesCountConsistencyJob;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Рейтинг популярности в памяти должен совпадать с порядком по films.likes_count в базе,
+ * в том числе с фильтрами по жанрам и годам.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:popular-index;DB_CLOSE_DELAY=-1",
+        "filmorate.recommendations.precompute=false"
+})
+class PopularFilmsIndexTest {
+    @Autowired
+    private PopularFilmsIndex popularFilmsIndex;
+    @Autowired
+    private LikesCountConsistencyJob likesCountConsistencyJob;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserService userService;
+
+    /**
+     * Лишний лайк в рейтинге имитирует лайк, учтенный и загрузкой при построении, и сервисом после него.
+     */
+    @Test
+    void scheduledRepairCorrectsDoubleCountedLikes() {
+        int first = filmService.create(film()).getId();
+        int second = filmService.create(film()).getId();
+        for (int i = 0; i < 2; i++) {
+            filmService.addLike(first, userService.create(user(i)).getId());
+        }
+        filmService.addLike(second, userService.create(user(2)).getId());
+        popularFilmsIndex.changeLikes(second, 2);
+        assertNotEquals(popularInDatabase(), popularFilmsIndex.findPopular(null, FilmFilter.NONE));
+
+        likesCountConsistencyJob.repair();
+        assertEquals(popularInDatabase(), popularFilmsIndex.findPopular(null, FilmFilter.NONE));
+        assertEquals(0, popularFilmsIndex.reconcile());
+    }
+
+    /**
+     * Рейтинг в памяти сливает рейтинги жанров или годов, запрос фильтрует в базе: для любых фильтров и count
+     * порядок должен совпадать, в том числе для фильмов сразу с несколькими жанрами из фильтра и равных по лайкам.
+     */
+    @Test
+    void inMemoryTopMatchesDatabaseForGenreAndYearFilters() {
+        Random random = new Random(21);
+        List<Integer> films = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Set<Integer> genreIds = new HashSet<>();
+            for (int j = random.nextInt(4); j > 0; j--) {
+                genreIds.add(1 + random.nextInt(6));
+            }
+            films.add(filmService.create(film(1985 + random.nextInt(30), genreIds)).getId());
+        }
+        List<Integer> users = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            users.add(userService.create(user(100 + i)).getId());
+        }
+        for (int i = 0; i < 120; i++) {
+            filmService.addLike(films.get(random.nextInt(films.size())), users.get(random.nextInt(users.size())));
+        }
+
+        List<FilmFilter> filters = List.of(
+                FilmFilter.NONE,
+                new FilmFilter(Set.of(2), null, null),
+                new FilmFilter(Set.of(1, 3, 5), null, null),
+                new FilmFilter(Set.of(), 1995, 2005),
+                new FilmFilter(Set.of(), 2000, null),
+                new FilmFilter(Set.of(), null, 1990),
+                new FilmFilter(Set.of(), 2000, 2000),
+                new FilmFilter(Set.of(2, 4, 6), 1990, 2010),
+                new FilmFilter(Set.of(1, 2, 3, 4, 5, 6), 1998, 2003),
+                new FilmFilter(Set.of(5), 2010, 2000));
+        for (FilmFilter filter : filters) {
+            for (Integer count : Arrays.asList(null, 1, 5, 100)) {
+                assertEquals(popularInDatabase(count, filter), popularFilmsIndex.findPopular(count, filter),
+                        "Фильтр " + filter + ", count " + count);
+            }
+        }
+    }
+
+    private List<Integer> popularInDatabase() {
+        return popularInDatabase(null, FilmFilter.NONE);
+    }
+
+    private List<Integer> popularInDatabase(Integer count, FilmFilter filter) {
+        return filmStorage.findPopular(count, filter, EnumSet.of(FilmField.ID)).stream()
+                .map(Film::getId)
+                .toList();
+    }
+
+    private static Film film() {
+        return film(2000, Set.of());
+    }
+
+    private static Film film(int year, Set<Integer> genreIds) {
+        LinkedHashSet<Genre> genres = new LinkedHashSet<>();
+        genreIds.forEach(id -> genres.add(new Genre(id, null)));
+        return Film.builder()
+                .name("Фильм")
+                .description("Описание")
+                .releaseDate(LocalDate.of(year, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, null))
+                .genres(genres)
+                .build();
+    }
+
+    private static User user(int i) {
+        return User.builder()
+                .email("popular" + i + "@mail.ru").login("popular" + i).name("popular" + i)
+                .birthday(LocalDate.of(1990, 1, 1)).build();
+    }
+}
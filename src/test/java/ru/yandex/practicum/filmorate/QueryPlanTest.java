@@ -0,0 +1,378 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.ClassUtils;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.*;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка планов запросов: сценарий вызывает каждый метод каждого хранилища, все выполненные SQL-запросы
+ * записываются вместе с параметрами, затем для каждого выполняется EXPLAIN.
+ * Полный проход по таблице или индексу без условия допускается только для запросов из FULL_SCANS, с объяснением,
+ * почему это не горячий путь. Новый метод хранилища без вызова в сценарии тоже роняет тест.
+ * Лимит лайков пользователя для film_co_likes равен 1, чтобы сценарий проходил через выход за лимит и возврат в него.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:query-plans;DB_CLOSE_DELAY=-1",
+        "filmorate.recommendations.precompute=false",
+        "filmorate.similar.max-user-likes=1"
+})
+class QueryPlanTest {
+    private static final Pattern DML = Pattern.compile("^\\s*(SELECT|INSERT|UPDATE|DELETE|MERGE|WITH)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern FULL_SCAN = Pattern.compile("/\\* PUBLIC\\.\\w+(\\.tableScan)? \\*/");
+
+    private static final Map<Pattern, String> FULL_SCANS = Map.ofEntries(
+            scan("^SELECT \\* FROM genres$", "справочник жанров загружается в память при старте"),
+            scan("^SELECT \\* FROM mpa_rating$", "справочник рейтингов загружается в память при старте"),
+            scan("FROM directors AS d ORDER BY d.director_id$", "справочник режиссеров загружается в память при старте"),
+            scan("^SELECT user_id, login, name, email, birthday FROM users$", "GET /users без страниц отдает всех пользователей"),
+            scan("^SELECT user_id FROM users$", "индекс id строится при старте"),
+            scan("^SELECT film_id FROM films$", "индекс id строится при старте"),
+            scan("FROM films AS f\\s+ORDER BY f.film_id$", "полный каталог и выгрузка, индексы в памяти строятся из него при старте"),
+            scan("UPPER\\(f.name\\) LIKE", "поиск в базе только для запросов с шаблонами LIKE, остальное обслуживает FilmSearchIndex"),
+            scan("UPPER\\(d.name\\) LIKE", "поиск в базе только для запросов с шаблонами LIKE, остальное обслуживает FilmSearchIndex"),
+            scan("^SELECT film_id, user_id FROM likes$", "индекс лайков строится при старте"),
+            scan("WHERE EVENT_TYPE = 'LIKE'", "рейтинг трендов строится при старте и по расписанию"),
+            scan("SUM\\(POWER\\(2, DATEDIFF", "тренды читаются из базы только пока строится рейтинг трендов"),
+            scan("^SELECT\\s+review_id, content, is_positive, user_id, film_id, useful FROM reviews$", "индекс отзывов строится при старте"),
+            scan("WHERE f.likes_count <> \\(SELECT COUNT", "фоновая сверка счетчиков лайков"),
+            scan("FROM likes GROUP BY user_id\\) AS u", "фоновая сверка film_co_likes с likes"),
+            scan("^SELECT COALESCE\\(SUM\\(CAST\\(co_likes AS BIGINT\\)\\), 0\\) FROM film_co_likes$", "фоновая сверка film_co_likes с likes"),
+            scan("^DELETE FROM film_co_likes$", "пересчет film_co_likes только при расхождении с likes"),
+            scan("SELECT a.film_id, b.film_id, COUNT\\(\\*\\)", "пересчет film_co_likes только при расхождении с likes")
+    );
+
+    private static final Map<String, List<Object>> STATEMENTS = new ConcurrentHashMap<>();
+    private static final Set<String> CALLED_METHODS = ConcurrentHashMap.newKeySet();
+    private static final Set<Class<?>> STORAGES = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private FriendStorage friendStorage;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private LikeStorage likeStorage;
+    @Autowired
+    private GenreStorage genreStorage;
+    @Autowired
+    private MpaStorage mpaStorage;
+    @Autowired
+    private DirectorStorage directorStorage;
+    @Autowired
+    private ReviewStorage reviewStorage;
+    @Autowired
+    private FeedStorage feedStorage;
+
+    @Test
+    void everyStorageQueryUsesIndexes() throws Exception {
+        STATEMENTS.clear();
+        CALLED_METHODS.clear();
+        runScenario();
+        assertFalse(STATEMENTS.isEmpty(), "Запросы к базе не записаны");
+
+        List<String> missing = new ArrayList<>();
+        for (Class<?> storage : STORAGES) {
+            for (Method method : storage.getDeclaredMethods()) {
+                if (!method.isDefault() && !Modifier.isStatic(method.getModifiers())
+                        && !CALLED_METHODS.contains(key(method))) {
+                    missing.add(key(method));
+                }
+            }
+        }
+        assertTrue(missing.isEmpty(), "Методы хранилищ не вызываются в сценарии проверки планов: " + missing);
+
+        List<String> scans = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (Map.Entry<String, List<Object>> statement : STATEMENTS.entrySet()) {
+                String plan = explain(connection, statement.getKey(), statement.getValue());
+                if (isFullScan(plan) && FULL_SCANS.keySet().stream()
+                        .noneMatch(allowed -> allowed.matcher(statement.getKey().strip()).find())) {
+                    scans.add(statement.getKey().strip() + "\n" + plan);
+                }
+            }
+        }
+        assertTrue(scans.isEmpty(), "Полный проход по таблице в запросах:\n\n" + String.join("\n\n", scans));
+    }
+
+    private void runScenario() {
+        User first = userStorage.create(user("first"));
+        User second = userStorage.create(user("second"));
+        User third = userStorage.create(user("third"));
+        userStorage.update(first);
+        userStorage.findAll();
+        userStorage.findUserById(first.getId());
+        userStorage.existsById(first.getId());
+        userStorage.existsAll(List.of(first.getId(), second.getId()));
+        userStorage.forEachUserId(id -> {
+        });
+
+        friendStorage.addFriend(first.getId(), second.getId());
+        friendStorage.addFriend(third.getId(), second.getId());
+        friendStorage.findAllFriends(first.getId());
+        friendStorage.findCommonFriends(first.getId(), third.getId());
+        friendStorage.removeFriend(third.getId(), second.getId());
+
+        mpaStorage.findAllMpa();
+        mpaStorage.findMpaById(1);
+        genreStorage.findAllGenres();
+        genreStorage.findGenreById(1);
+
+        Director director = directorStorage.create(Director.builder().name("Director").build());
+        Director other = directorStorage.create(Director.builder().name("Other").build());
+        directorStorage.update(director);
+        directorStorage.findAllDirectors();
+        directorStorage.findDirectorById(director.getId());
+        directorStorage.existsById(director.getId());
+        directorStorage.existsAll(List.of(director.getId(), other.getId()));
+
+        Film film = filmStorage.create(film("First", director));
+        Film next = filmStorage.create(film("Second", director));
+        Film last = filmStorage.create(film("Third", other));
+        filmStorage.createAll(List.of(film("Fourth", director), film("Fifth", other)));
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(2, null), new Genre(3, null))));
+        film.getDirectors().clear();
+        film.getDirectors().add(other);
+        filmStorage.update(film);
+        Set<FilmField> all = FilmField.ALL;
+        filmStorage.findAllFilms(all);
+        filmStorage.findFilmsPage(0, 2, all);
+        filmStorage.exportAllFilms(films -> {
+        });
+        filmStorage.findFilmById(film.getId(), all);
+        filmStorage.existsById(film.getId());
+        filmStorage.existsAll(List.of(film.getId(), next.getId()));
+        filmStorage.forEachFilmId(id -> {
+        });
+        filmStorage.findFilmsByIds(List.of(film.getId(), next.getId()), all);
+        filmStorage.findPopular(10, FilmFilter.NONE, all);
+        filmStorage.findPopular(10, new FilmFilter(Set.of(1, 2), null, null), all);
+        filmStorage.findPopular(10, new FilmFilter(Set.of(), 2000, 2000), all);
+        filmStorage.findPopular(10, new FilmFilter(Set.of(), 1990, null), all);
+        filmStorage.findPopular(10, new FilmFilter(Set.of(1), 1990, 2010), all);
+        filmStorage.findTrending(10, FilmFilter.NONE, Duration.ofDays(7), all);
+        filmStorage.findTrending(null, new FilmFilter(Set.of(1), 1990, 2010), Duration.ofDays(7), all);
+        filmStorage.findFilmsByDirectorID(director.getId(), "year", 10, 0, all);
+        filmStorage.findFilmsByDirectorID(director.getId(), "likes", null, 0, all);
+        filmStorage.searchFilmsByName("fir", all);
+        filmStorage.searchFilmsByDir("dir", all);
+        filmStorage.searchFilmsByDirAndName("fir", all);
+        genreStorage.findAllGenresByFilmID(film.getId());
+
+        Instant now = Instant.now();
+        likeStorage.addLike(film.getId(), first.getId(), now);
+        likeStorage.addLike(next.getId(), first.getId(), now);
+        likeStorage.addLike(film.getId(), second.getId(), now);
+        likeStorage.addLike(last.getId(), second.getId(), now);
+        likeStorage.findFilmIdsByUserId(first.getId());
+        likeStorage.findSimilarFilmIds(film.getId(), 10);
+        likeStorage.forEachLike((filmId, userId) -> {
+        });
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE film_id = ?", film.getId());
+        likeStorage.repairLikesCount();
+        jdbcTemplate.update("INSERT INTO film_co_likes (film_id, other_film_id, co_likes) VALUES (?, ?, 1)",
+                film.getId(), next.getId());
+        likeStorage.backfillCoLikes();
+        likeStorage.removeLike(next.getId(), first.getId());
+        filmStorage.findRecommendedFilms(first.getId());
+        filmStorage.findCommonFilms(first.getId(), second.getId(), all);
+
+        Review review = reviewStorage.create(Review.builder()
+                .content("Good").isPositive(true).userId(first.getId()).filmId(film.getId()).build());
+        reviewStorage.update(review);
+        reviewStorage.isAlreadyExists(review);
+        reviewStorage.findAll(10);
+        reviewStorage.findByFilmId(film.getId(), 10);
+        reviewStorage.findById(review.getId());
+        reviewStorage.existsById(review.getId());
+        reviewStorage.existsAll(List.of(review.getId()));
+        reviewStorage.findByIds(List.of(review.getId()));
+        reviewStorage.forEachReview(found -> {
+        });
+        reviewStorage.addLike(review.getId(), second.getId());
+        reviewStorage.deleteLike(review.getId(), second.getId());
+        reviewStorage.addDislike(review.getId(), third.getId());
+        reviewStorage.deleteDislike(review.getId(), third.getId());
+        reviewStorage.delete(review.getId());
+
+        feedStorage.create(FeedEntry.builder().timestamp(now.toEpochMilli()).userId(first.getId())
+                .eventType(FeedEventType.LIKE).operation(FeedOperationType.ADD).entityId(film.getId()).build());
+        feedStorage.getUserFeed(first.getId());
+        feedStorage.forEachLikeEvent(event -> {
+        });
+
+        filmStorage.deleteFilmById(last.getId());
+        directorStorage.removeDirectorById(other.getId());
+        userStorage.deleteUserById(second.getId());
+    }
+
+    /**
+     * H2 помечает проход без условия комментарием с именем индекса без условия после двоеточия
+     * или с суффиксом tableScan. Проход по индексу сортировки с LIMIT полным не считается.
+     */
+    private static boolean isFullScan(String plan) {
+        return FULL_SCAN.matcher(plan).find() && !(plan.contains("/* index sorted */") && plan.contains("FETCH FIRST"));
+    }
+
+    private static String explain(Connection connection, String sql, List<Object> params) throws Exception {
+        try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1));
+                }
+                return plan.toString();
+            }
+        }
+    }
+
+    private static User user(String login) {
+        return User.builder().email(login + "@mail.ru").login(login).name(login).birthday(LocalDate.of(1990, 1, 1)).build();
+    }
+
+    private static Film film(String name, Director director) {
+        Film film = Film.builder()
+                .name(name)
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, null))
+                .genres(new LinkedHashSet<>(List.of(new Genre(1, null), new Genre(2, null))))
+                .build();
+        film.getDirectors().add(director);
+        return film;
+    }
+
+    private static Map.Entry<Pattern, String> scan(String sql, String reason) {
+        return Map.entry(Pattern.compile(sql, Pattern.CASE_INSENSITIVE), reason);
+    }
+
+    private static String key(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void record(String sql, Map<Integer, Object> params) {
+        if (DML.matcher(sql).find()) {
+            List<Object> values = new ArrayList<>();
+            for (int i = 1; i <= params.size(); i++) {
+                values.add(params.get(i));
+            }
+            STATEMENTS.putIfAbsent(sql, values);
+        }
+    }
+
+    /**
+     * Оборачивает источник данных, чтобы записывать выполняемые запросы с параметрами,
+     * и хранилища, чтобы записывать вызванные методы.
+     */
+    @TestConfiguration
+    static class RecordingConfig {
+        @Bean
+        static BeanPostProcessor recordingPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource) {
+                        return proxy(DataSource.class, dataSource, (method, args, result) ->
+                                result instanceof Connection connection ? recordingConnection(connection) : result);
+                    }
+                    Class<?> target = AopUtils.getTargetClass(bean);
+                    if (target.isAnnotationPresent(Repository.class)) {
+                        Class<?>[] storages = Arrays.stream(ClassUtils.getAllInterfacesForClass(target))
+                                .filter(type -> type.getPackageName().endsWith(".storage"))
+                                .toArray(Class<?>[]::new);
+                        STORAGES.addAll(Arrays.asList(storages));
+                        return Proxy.newProxyInstance(target.getClassLoader(), storages, (proxy, method, args) -> {
+                            CALLED_METHODS.add(key(method));
+                            return invoke(bean, method, args);
+                        });
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        private static Connection recordingConnection(Connection connection) {
+            return proxy(Connection.class, connection, (method, args, result) -> {
+                if (result instanceof PreparedStatement statement && args != null && args[0] instanceof String sql) {
+                    return recordingStatement(PreparedStatement.class, statement, sql);
+                }
+                if (result instanceof Statement statement) {
+                    return recordingStatement(Statement.class, statement, null);
+                }
+                return result;
+            });
+        }
+
+        private static <T extends Statement> T recordingStatement(Class<T> type, T statement, String preparedSql) {
+            Map<Integer, Object> params = new HashMap<>();
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    params.put(index, name.equals("setNull") ? null : args[1]);
+                } else if (name.startsWith("execute") || name.equals("addBatch")) {
+                    if (preparedSql != null && (args == null || args.length == 0)) {
+                        record(preparedSql, params);
+                    } else if (args != null && args.length > 0 && args[0] instanceof String sql) {
+                        record(sql, Map.of());
+                    }
+                }
+                return invoke(statement, method, args);
+            }));
+        }
+
+        private static <T> T proxy(Class<T> type, T target, ResultMapper mapper) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                    mapper.map(method, args, invoke(target, method, args))));
+        }
+
+        @FunctionalInterface
+        private interface ResultMapper {
+            Object map(Method method, Object[] args, Object result);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.model.FilmScore;
+import ru.yandex.practicum.filmorate.recommendation.CosineRecommender;
+import ru.yandex.practicum.filmorate.recommendation.ItemBasedRecommender;
+import ru.yandex.practicum.filmorate.recommendation.JaccardRecommender;
+import ru.yandex.practicum.filmorate.recommendation.MaxOverlapRecommender;
+import ru.yandex.practicum.filmorate.recommendation.OverlapCounter;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecommenderTest {
+    private LikeMatrix likes;
+
+    /**
+     * Пользователь 1 лайкнул фильмы 1, 2, 3.
+     * Пользователь 2 совпадает с ним по двум фильмам и лайкнул еще 4 и 5.
+     * Пользователь 3 совпадает по одному фильму и лайкнул еще 6.
+     * Пользователь 4 совпадает по двум фильмам и лайкнул еще 5 и десяток других.
+     */
+    @BeforeEach
+    void setUp() {
+        likes = new LikeMatrix();
+        like(1, 1, 2, 3);
+        like(2, 1, 2, 4, 5);
+        like(3, 3, 6);
+        like(4, 2, 3, 5, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29);
+    }
+
+    @Test
+    void maxOverlapRecommendsFilmsOfAllBestNeighboursInIdOrder() {
+        List<FilmScore> recommended = new MaxOverlapRecommender(OverlapCounter.sequential()).recommend(likes, 1, Integer.MAX_VALUE);
+
+        assertEquals(List.of(4, 5, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29), ids(recommended));
+        assertTrue(recommended.stream().allMatch(score -> score.getScore() == 2));
+    }
+
+    @Test
+    void maxOverlapRespectsLimit() {
+        assertEquals(List.of(4, 5), ids(new MaxOverlapRecommender(OverlapCounter.sequential()).recommend(likes, 1, 2)));
+    }
+
+    @Test
+    void jaccardPenalisesNeighboursWithManyLikes() {
+        List<FilmScore> recommended = new JaccardRecommender(OverlapCounter.sequential(), 2).recommend(likes, 1, Integer.MAX_VALUE);
+
+        assertEquals(List.of(4, 5, 6), ids(recommended));
+        assertEquals(2.0 / 5, recommended.get(0).getScore(), 1e-9);
+        assertEquals(1.0 / 4, recommended.get(2).getScore(), 1e-9);
+    }
+
+    @Test
+    void cosineUsesOnlyTopNeighbours() {
+        List<FilmScore> recommended = new CosineRecommender(OverlapCounter.sequential(), 1).recommend(likes, 1, Integer.MAX_VALUE);
+
+        assertEquals(List.of(4, 5), ids(recommended));
+    }
+
+    @Test
+    void itemBasedScoresCoLikedFilms() {
+        List<FilmScore> recommended = new ItemBasedRecommender().recommend(likes, 1, 1);
+
+        assertEquals(List.of(5), ids(recommended));
+    }
+
+    @Test
+    void parallelOverlapCountMatchesSequential() {
+        OverlapCounter parallel = new OverlapCounter(4, 0);
+        try {
+            for (int userId = 1; userId <= 4; userId++) {
+                assertArrayEquals(OverlapCounter.sequential().countOverlaps(likes, userId), parallel.countOverlaps(likes, userId));
+            }
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    void userWithoutLikesGetsNothing() {
+        assertTrue(new MaxOverlapRecommender(OverlapCounter.sequential()).recommend(likes, 99, 10).isEmpty());
+        assertTrue(new JaccardRecommender(OverlapCounter.sequential(), 50).recommend(likes, 99, 10).isEmpty());
+        assertTrue(new ItemBasedRecommender().recommend(likes, 99, 10).isEmpty());
+    }
+
+    private void like(int userId, int... filmIds) {
+        for (int filmId : filmIds) {
+            likes.add(filmId, userId);
+        }
+    }
+
+    private static List<Integer> ids(List<FilmScore> scores) {
+        return scores.stream().map(FilmScore::getFilmId).toList();
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.cache.ReferenceData;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Промах по снимку справочников читает из базы только недостающую запись, а не перечитывает все таблицы.
+ */
+class ReferenceDataTest {
+    private final GenreStorage genreStorage = mock(GenreStorage.class);
+    private final MpaStorage mpaStorage = mock(MpaStorage.class);
+    private final DirectorStorage directorStorage = mock(DirectorStorage.class);
+
+    @Test
+    void missingDirectorIsFetchedByIdAndKeptInSnapshot() {
+        when(genreStorage.findAllGenres()).thenReturn(List.of(new Genre(1, "Комедия")));
+        when(mpaStorage.findAllMpa()).thenReturn(List.of(new Mpa(1, "G")));
+        when(directorStorage.findAllDirectors()).thenReturn(List.of(new Director(1, "Bergman")));
+        when(directorStorage.findDirectorById(2)).thenReturn(Optional.of(new Director(2, "Bresson")));
+        ReferenceData referenceData = new ReferenceData(genreStorage, mpaStorage, directorStorage);
+        referenceData.reload();
+
+        assertEquals("Bresson", referenceData.director(2).getName());
+        assertEquals("Bresson", referenceData.director(2).getName());
+        assertEquals(List.of(new Director(1, "Bergman"), new Director(2, "Bresson")),
+                referenceData.findAllDirectors());
+        assertNull(referenceData.director(3).getName());
+
+        verify(directorStorage, times(1)).findDirectorById(2);
+        verify(directorStorage, times(1)).findAllDirectors();
+        verify(genreStorage, times(1)).findAllGenres();
+        verify(mpaStorage, times(1)).findAllMpa();
+    }
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.index.ReviewSearchIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReviewService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Поиск отзывов через индекс в памяти: порядок выдачи, фильтры и обновление индекса при изменении отзывов,
+ * удалении фильмов и пользователей. После каждого изменения выдача должна совпадать с индексом, построенным заново.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:review-search;DB_CLOSE_DELAY=-1",
+        "filmorate.recommendations.precompute=false"
+})
+class ReviewSearchIndexTest {
+    private static final int COUNT = 10;
+
+    @Autowired
+    private ReviewService reviewService;
+    @Autowired
+    private ReviewSearchIndex reviewSearchIndex;
+    @Autowired
+    private FilmService filmService;
+    @Autowired
+    private UserService userService;
+
+    /**
+     * Первый отзыв релевантнее остальных: слово запроса встречается в нем дважды. Остальные совпадают по тексту
+     * и различаются полезностью, при равной полезности идут по возрастанию id.
+     */
+    @Test
+    void searchOrdersByRelevanceThenUsefulThenIdAndAppliesFilters() {
+        int film = createFilm();
+        int otherFilm = createFilm();
+        List<Integer> users = List.of(createUser(), createUser(), createUser(), createUser());
+        int twice = createReview(users.get(0), film, true, "Сюжет отличный, актеры отличные, сюжет держит");
+        int first = createReview(users.get(1), film, true, "Сюжет держит до конца");
+        int useful = createReview(users.get(2), film, true, "Сюжет держит до конца");
+        int second = createReview(users.get(3), film, true, "Сюжет держит до конца");
+        int negative = createReview(users.get(0), otherFilm, false, "Сюжет держит до конца");
+        reviewService.addLike(useful, users.get(0));
+
+        assertSearch(List.of(twice, useful, first, second, negative), "сюжет", null, null);
+        assertSearch(List.of(twice, useful, first, second), "СЮЖЕТ", true, null);
+        assertSearch(List.of(negative), "сюжет", false, null);
+        assertSearch(List.of(negative), "сюжет держит", null, otherFilm);
+        assertSearch(List.of(), "сюжет", true, otherFilm);
+        assertSearch(List.of(), "сюжет отсутствует", null, null);
+        assertEquals(List.of(twice, useful), ids(reviewService.search("сюжет", null, null, 2)));
+    }
+
+    @Test
+    void indexFollowsReviewUpdatesAndDeletes() {
+        int film = createFilm();
+        int otherFilm = createFilm();
+        int author = createUser();
+        int otherAuthor = createUser();
+        int updated = createReview(author, film, true, "Музыка запоминается");
+        int deleted = createReview(otherAuthor, film, true, "Музыка запоминается");
+        int ofDeletedFilm = createReview(author, otherFilm, true, "Музыка запоминается");
+        assertSearch(List.of(updated, deleted, ofDeletedFilm), "музыка", null, null);
+
+        reviewService.update(Review.builder().id(updated).content("Декорации картонные").isPositive(false)
+                .userId(author).filmId(film).build());
+        assertSearch(List.of(deleted, ofDeletedFilm), "музыка", null, null);
+        assertSearch(List.of(updated), "декорации", false, film);
+
+        reviewService.delete(deleted);
+        assertSearch(List.of(ofDeletedFilm), "музыка", null, null);
+
+        filmService.deleteFilmById(otherFilm);
+        assertSearch(List.of(), "музыка", null, null);
+
+        userService.deleteUserById(author);
+        assertSearch(List.of(), "декорации", null, null);
+    }
+
+    private void assertSearch(List<Integer> expected, String query, Boolean isPositive, Integer filmId) {
+        assertEquals(expected, reviewSearchIndex.search(query, isPositive, filmId, COUNT));
+        reviewSearchIndex.rebuild();
+        assertEquals(expected, reviewSearchIndex.search(query, isPositive, filmId, COUNT));
+        if (!expected.isEmpty()) {
+            assertEquals(expected, ids(reviewService.search(query, isPositive, filmId, COUNT)));
+        }
+    }
+
+    private int createReview(int userId, int filmId, boolean isPositive, String content) {
+        return reviewService.create(Review.builder()
+                .content(content).isPositive(isPositive).userId(userId).filmId(filmId).build()).getId();
+    }
+
+    private int createFilm() {
+        return filmService.create(Film.builder()
+                .name("Фильм")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, null))
+                .build()).getId();
+    }
+
+    private int createUser() {
+        String login = "reviewer" + System.nanoTime();
+        return userService.create(User.builder()
+                .email(login + "@mail.ru").login(login).name(login).birthday(LocalDate.of(1990, 1, 1)).build()).getId();
+    }
+
+    private static List<Integer> ids(List<Review> reviews) {
+        return reviews.stream().map(Review::getId).toList();
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.cache.ReferenceData;
+import ru.yandex.practicum.filmorate.index.SuggestionIndex;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Suggestion;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Подсказки по префиксу: границы отрезка отсортированного массива, переименование и удаление,
+ * пакетное добавление. Хранилища подменены, фильмы и режиссеры для построения задаются в тесте.
+ */
+class SuggestionIndexTest {
+    private final FilmStorage filmStorage = mock(FilmStorage.class);
+    private final ReferenceData referenceData = mock(ReferenceData.class);
+
+    /**
+     * Префикс находит ровно отрезок имен, которые с него начинаются: ни соседа слева, ни соседа справа.
+     * Одинаковые имена идут сначала фильмами, затем режиссерами, внутри - по id.
+     */
+    @Test
+    void prefixSelectsExactlyNamesStartingWithIt() {
+        SuggestionIndex index = builtIndex(
+                List.of(film(1, "Alien"), film(2, "Aliens"), film(3, "Alien  Resurrection"), film(4, "Alias"),
+                        film(5, "Amadeus"), film(6, "alien 3")),
+                List.of(director(1, "Alien"), director(2, "Zemeckis")));
+
+        assertEquals(List.of("FILM 1 Alien", "DIRECTOR 1 Alien", "FILM 6 alien 3", "FILM 3 Alien  Resurrection",
+                "FILM 2 Aliens"), names(index.suggest("alien", 10)));
+        assertEquals(names(index.suggest("alien", 10)), names(index.suggest("  ALIEN ", 10)));
+        assertEquals(List.of("FILM 3 Alien  Resurrection"), names(index.suggest("alien r", 10)));
+        assertEquals(List.of("FILM 2 Aliens"), names(index.suggest("aliens", 10)));
+        assertEquals(List.of("FILM 4 Alias"), names(index.suggest("alia", 10)));
+        assertEquals(List.of("FILM 4 Alias", "FILM 1 Alien"), names(index.suggest("a", 2)));
+        assertEquals(List.of(), names(index.suggest("aliensx", 10)));
+        assertEquals(List.of(), names(index.suggest("b", 10)));
+        assertEquals(List.of(), names(index.suggest("zz", 10)));
+        assertEquals(List.of("DIRECTOR 2 Zemeckis"), names(index.suggest("z", 10)));
+        assertEquals(8, index.suggest("", 100).size());
+    }
+
+    @Test
+    void renameAndDeleteMoveNamesOutOfOldPrefix() {
+        SuggestionIndex index = builtIndex(List.of(film(1, "Brazil"), film(2, "Breathless")),
+                List.of(director(1, "Bergman")));
+
+        index.putFilm(film(1, "Casablanca"));
+        index.putDirector(director(1, "Bresson"));
+        assertEquals(List.of("FILM 2 Breathless", "DIRECTOR 1 Bresson"), names(index.suggest("br", 10)));
+        assertEquals(List.of("FILM 1 Casablanca"), names(index.suggest("c", 10)));
+        assertEquals(List.of(), names(index.suggest("bergman", 10)));
+
+        index.deleteFilm(2);
+        index.deleteDirector(1);
+        index.deleteFilm(99);
+        assertEquals(List.of(), names(index.suggest("b", 10)));
+        assertEquals(List.of("FILM 1 Casablanca"), names(index.suggest("", 10)));
+    }
+
+    /**
+     * Пакет с новыми фильмами и переименованным существующим дает тот же снимок, что и построение с нуля.
+     */
+    @Test
+    void batchPutMatchesIndexBuiltFromScratch() {
+        List<Film> existing = new ArrayList<>(List.of(film(1, "Metropolis"), film(2, "Memento"), film(3, "Mirror")));
+        SuggestionIndex index = builtIndex(existing, List.of(director(1, "Murnau")));
+
+        List<Film> batch = List.of(film(2, "Mother"), film(5, "Mad Max"), film(4, "Melancholia"), film(6, "Memento"));
+        index.putFilms(batch);
+
+        List<Film> all = new ArrayList<>(List.of(film(1, "Metropolis"), film(3, "Mirror")));
+        all.addAll(batch);
+        SuggestionIndex rebuilt = builtIndex(all, List.of(director(1, "Murnau")));
+        assertEquals(names(rebuilt.suggest("", 100)), names(index.suggest("", 100)));
+        assertEquals(List.of("FILM 5 Mad Max", "FILM 4 Melancholia", "FILM 6 Memento", "FILM 1 Metropolis",
+                "FILM 3 Mirror", "FILM 2 Mother", "DIRECTOR 1 Murnau"), names(index.suggest("m", 100)));
+    }
+
+    private SuggestionIndex builtIndex(List<Film> films, List<Director> directors) {
+        when(filmStorage.findAllFilms(any())).thenReturn(films);
+        when(referenceData.findAllDirectors()).thenReturn(directors);
+        SuggestionIndex index = new SuggestionIndex(filmStorage, referenceData);
+        index.rebuild();
+        return index;
+    }
+
+    private static List<String> names(List<Suggestion> suggestions) {
+        return suggestions.stream()
+                .map(suggestion -> suggestion.getKind() + " " + suggestion.getId() + " " + suggestion.getName())
+                .toList();
+    }
+
+    private static Film film(int id, String name) {
+        return Film.builder().id(id).name(name).build();
+    }
+
+    private static Director director(int id, String name) {
+        return Director.builder().id(id).name(name).build();
+    }
+}
@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.index.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.model.FeedEntry;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.FeedOperationType;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.storage.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Порядок трендов при периоде полураспада 7 дней: лайк трехнедельной давности весит 1/8 свежего.
+ * Хранилища подменены: фильмы и события лайков для построения рейтинга задаются в тесте.
+ */
+class TrendingFilmsIndexTest {
+    private static final Duration HALF_LIFE = Duration.ofDays(7);
+
+    private final FilmStorage filmStorage = mock(FilmStorage.class);
+    private final FeedStorage feedStorage = mock(FeedStorage.class);
+    private final List<FeedEntry> likeEvents = new ArrayList<>();
+    private int nextUserId = 1;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            Consumer<FeedEntry> consumer = invocation.getArgument(0);
+            likeEvents.forEach(consumer);
+            return null;
+        }).when(feedStorage).forEachLikeEvent(any());
+    }
+
+    @Test
+    void olderLikesWeighLessByHalfLife() {
+        TrendingFilmsIndex index = builtIndex();
+        Instant now = Instant.now();
+        Instant threeWeeksAgo = now.minus(HALF_LIFE.multipliedBy(3));
+        for (int id = 1; id <= 4; id++) {
+            index.put(film(id));
+        }
+
+        like(index, 1, threeWeeksAgo, 2);
+        int userId = like(index, 2, now, 1);
+        like(index, 3, threeWeeksAgo, 5);
+        like(index, 4, threeWeeksAgo, 9);
+        assertEquals(List.of(4, 2, 3, 1), index.findTrending(null, FilmFilter.NONE));
+
+        index.removeLike(2, userId);
+        assertEquals(List.of(4, 3, 1, 2), index.findTrending(null, FilmFilter.NONE));
+        index.removeLike(2, userId);
+        assertEquals(List.of(4, 3, 1, 2), index.findTrending(null, FilmFilter.NONE));
+        assertEquals(List.of(4, 3), index.findTrending(2, FilmFilter.NONE));
+    }
+
+    @Test
+    void orderSurvivesOriginShift() {
+        TrendingFilmsIndex index = builtIndex();
+        Instant now = Instant.now();
+        for (int id = 1; id <= 3; id++) {
+            index.put(film(id));
+        }
+        like(index, 1, now, 3);
+        like(index, 2, now, 2);
+        like(index, 3, now, 1);
+
+        Instant later = now.plus(HALF_LIFE.multipliedBy(300));
+        int userId = like(index, 3, later, 1);
+        assertEquals(List.of(3, 1, 2), index.findTrending(null, FilmFilter.NONE));
+
+        index.removeLike(3, userId);
+        assertEquals(List.of(1, 2, 3), index.findTrending(null, FilmFilter.NONE));
+    }
+
+    /**
+     * Лайк, который построение уже прочитало из ленты, сервис применяет к рейтингу еще раз.
+     */
+    @Test
+    void likeLoadedFromFeedIsNotCountedTwice() {
+        Instant now = Instant.now();
+        when(filmStorage.findAllFilms(any())).thenReturn(List.of(film(1), film(2)));
+        likeEvents.add(likeEvent(1, 1, now));
+        TrendingFilmsIndex index = new TrendingFilmsIndex(filmStorage, feedStorage, HALF_LIFE);
+        assertFalse(index.isReady());
+        index.addLike(2, 2, now);
+        index.rebuild();
+        assertTrue(index.isReady());
+
+        index.addLike(1, 1, now);
+        index.addLike(2, 2, now);
+        index.addLike(2, 3, now);
+        assertEquals(List.of(2, 1), index.findTrending(null, FilmFilter.NONE));
+    }
+
+    private TrendingFilmsIndex builtIndex() {
+        TrendingFilmsIndex index = new TrendingFilmsIndex(filmStorage, feedStorage, HALF_LIFE);
+        index.rebuild();
+        return index;
+    }
+
+    /**
+     * Лайки likes новых пользователей, возвращает id последнего из них.
+     */
+    private int like(TrendingFilmsIndex index, int filmId, Instant likedAt, int likes) {
+        for (int i = 0; i < likes; i++) {
+            index.addLike(filmId, nextUserId++, likedAt);
+        }
+        return nextUserId - 1;
+    }
+
+    private static FeedEntry likeEvent(int filmId, int userId, Instant likedAt) {
+        return FeedEntry.builder()
+                .userId(userId)
+                .eventType(FeedEventType.LIKE)
+                .operation(FeedOperationType.ADD)
+                .entityId(filmId)
+                .timestamp(likedAt.toEpochMilli())
+                .build();
+    }
+
+    private static Film film(int id) {
+        return Film.builder()
+                .id(id)
+                .name("Фильм " + id)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .build();
+    }
+}